@@ -0,0 +1,15 @@
+package com.rmit.sept.mon15307.backend.Repositories;
+
+import com.rmit.sept.mon15307.backend.model.Booking;
+import com.rmit.sept.mon15307.backend.model.BookingSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface BookingSlotRepository extends JpaRepository<BookingSlot, Long> {
+    @Modifying
+    @Query("delete from BookingSlot s where s.booking = ?1")
+    void deleteByBooking(Booking booking);
+}
@@ -3,30 +3,87 @@ package com.rmit.sept.mon15307.backend.Repositories;
 import com.rmit.sept.mon15307.backend.model.Booking;
 import com.rmit.sept.mon15307.backend.model.Employee;
 import com.rmit.sept.mon15307.backend.model.Schedule;
-import com.rmit.sept.mon15307.backend.model.UserAccount;
 import com.rmit.sept.mon15307.backend.model.enumeration.BookingStatus;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
 import java.util.Collection;
+import java.util.List;
 
 @Repository
-public interface BookingsRepository extends CrudRepository<Booking, Long> {
-    Iterable<Booking> findByCustomerAndStatusIn(
-        UserAccount user, Collection<BookingStatus> statuses
+public interface BookingsRepository extends CrudRepository<Booking, Long>, BookingsRepositoryCustom {
+    int STREAM_FETCH_SIZE = 200;
+
+    // everything a booking is serialized with, so each streamed row stands alone
+    String STREAM_SELECT = "select b from Booking b join fetch b.customer join fetch b.employee e " +
+                           "join fetch e.user join fetch b.product join fetch b.schedule ";
+
+    // the columns of a BookingListing, see BookingsRepositoryImpl
+    String LISTING_SELECT =
+        "select b.bookingId as bookingId, b.status as status, e.employeeId as employeeId, " +
+        "u.preferredName as employeeName, p.productId as productId, p.name as productName, " +
+        "p.duration as productDuration, c.userId as customerId, " +
+        "c.preferredName as customerPreferredName, c.fullName as customerFullName, " +
+        "c.phoneNumber as customerPhoneNumber, b.date as date, b.startMinute as startMinute " +
+        "from Booking b join b.customer c join b.employee e join e.user u join b.product p ";
+
+    // Bookings returned as entities are loaded with Booking.SERIALIZED_GRAPH, so
+    // serializing a list of them takes one query rather than one per association
+    @EntityGraph(Booking.SERIALIZED_GRAPH)
+    Booking findByBookingId(Long bookingId);
+
+    // start time and length of each booking on the schedules, without loading entities
+    @Query("select b.schedule.id as scheduleId, b.startMinute as startMinute, b.endMinute as endMinute " +
+           "from Booking b where b.schedule in ?1 and b.status <> ?2")
+    List<BookedSlot> findBookedSlotsByScheduleInAndStatusNot(
+        Collection<Schedule> schedules, BookingStatus status
     );
 
-    Iterable<Booking> findBookingsByEmployeeAndStatusIsIn(
-        Employee employee, Collection<BookingStatus> statuses
+    // same, for every schedule of the employees within [startDate, endDate], joined
+    // on the schedule so the window costs one query however many days it spans
+    @Query("select s.id as scheduleId, b.startMinute as startMinute, b.endMinute as endMinute " +
+           "from Booking b join b.schedule s " +
+           "where s.employee in ?1 and s.date between ?2 and ?3 and b.status <> ?4")
+    List<BookedSlot> findBookedSlotsByEmployeeInAndDateBetweenAndStatusNot(
+        Collection<Employee> employees, LocalDate startDate, LocalDate endDate, BookingStatus status
     );
 
-    Iterable<Booking> findBookingsByStatusIsIn(Collection<BookingStatus> statuses);
+    interface BookingListing {
+        Long getBookingId();
 
-    Iterable<Booking> findBookingsBySchedule(Schedule schedule);
+        BookingStatus getStatus();
 
-    Iterable<Booking> findBookingsByScheduleAndStatusNot(Schedule schedule, BookingStatus status);
+        Long getEmployeeId();
 
-    Booking findByBookingId(Long bookingId);
+        String getEmployeeName();
+
+        Long getProductId();
+
+        String getProductName();
+
+        int getProductDuration();
+
+        Long getCustomerId();
+
+        String getCustomerPreferredName();
+
+        String getCustomerFullName();
+
+        String getCustomerPhoneNumber();
+
+        LocalDate getDate();
+
+        int getStartMinute();
+    }
+
+    interface BookedSlot {
+        Long getScheduleId();
+
+        int getStartMinute();
 
-    Iterable<Booking> findByScheduleAndEmployee(Schedule schedule, Employee employee);
-}
\ No newline at end of file
+        int getEndMinute();
+    }
+}
@@ -0,0 +1,18 @@
+package com.rmit.sept.mon15307.backend.Repositories;
+
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository.BookingListing;
+import com.rmit.sept.mon15307.backend.model.Booking;
+import com.rmit.sept.mon15307.backend.payload.BookingFilter;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface BookingsRepositoryCustom {
+    // Bookings matching the filter in id order, only those after afterId and at most
+    // limit of them when given
+    List<BookingListing> findListings(BookingFilter filter, Long afterId, Integer limit);
+
+    // Bookings matching the filter in id order, read from an open cursor
+    // STREAM_FETCH_SIZE rows at a time; must be consumed inside a transaction
+    Stream<Booking> streamBookings(BookingFilter filter);
+}
@@ -0,0 +1,147 @@
+package com.rmit.sept.mon15307.backend.Repositories;
+
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository.BookingListing;
+import com.rmit.sept.mon15307.backend.model.Booking;
+import com.rmit.sept.mon15307.backend.model.enumeration.BookingStatus;
+import com.rmit.sept.mon15307.backend.payload.BookingFilter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public class BookingsRepositoryImpl implements BookingsRepositoryCustom {
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Only the filters that were given end up in the query, so each combination
+    // gets a plan that can range scan the matching (owner, status, date) index
+    @Override
+    public List<BookingListing> findListings(BookingFilter filter, Long afterId, Integer limit) {
+        StringBuilder jpql = new StringBuilder(BookingsRepository.LISTING_SELECT);
+        Map<String, Object> parameters = new HashMap<>();
+
+        this.appendFilter(jpql, parameters, filter);
+        if (afterId != null) {
+            jpql.append(" and b.bookingId > :afterId");
+            parameters.put("afterId", afterId);
+        }
+        jpql.append(" order by b.bookingId");
+
+        TypedQuery<Tuple> query = entityManager.createQuery(jpql.toString(), Tuple.class);
+        parameters.forEach(query::setParameter);
+        if (limit != null) {
+            query.setMaxResults(limit);
+        }
+
+        return query.getResultList().stream().map(TupleListing::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public Stream<Booking> streamBookings(BookingFilter filter) {
+        StringBuilder jpql = new StringBuilder(BookingsRepository.STREAM_SELECT);
+        Map<String, Object> parameters = new HashMap<>();
+
+        this.appendFilter(jpql, parameters, filter);
+        jpql.append(" order by b.bookingId");
+
+        TypedQuery<Booking> query = entityManager.createQuery(jpql.toString(), Booking.class);
+        parameters.forEach(query::setParameter);
+        query.setHint(HINT_FETCH_SIZE, BookingsRepository.STREAM_FETCH_SIZE);
+
+        return query.getResultStream();
+    }
+
+    private void appendFilter(StringBuilder jpql, Map<String, Object> parameters, BookingFilter filter) {
+        jpql.append("where b.status in :statuses");
+        parameters.put("statuses", filter.getStatuses());
+        if (filter.getCustomer() != null) {
+            jpql.append(" and b.customer = :customer");
+            parameters.put("customer", filter.getCustomer());
+        }
+        if (filter.getEmployee() != null) {
+            jpql.append(" and b.employee = :employee");
+            parameters.put("employee", filter.getEmployee());
+        }
+        if (filter.getProduct() != null) {
+            jpql.append(" and b.product = :product");
+            parameters.put("product", filter.getProduct());
+        }
+        if (filter.getFrom() != null) {
+            jpql.append(" and b.date >= :from");
+            parameters.put("from", filter.getFrom());
+        }
+        if (filter.getTo() != null) {
+            jpql.append(" and b.date <= :to");
+            parameters.put("to", filter.getTo());
+        }
+    }
+
+    private static class TupleListing implements BookingListing {
+        private final Tuple tuple;
+
+        TupleListing(Tuple tuple) {
+            this.tuple = tuple;
+        }
+
+        public Long getBookingId() {
+            return tuple.get("bookingId", Long.class);
+        }
+
+        public BookingStatus getStatus() {
+            return tuple.get("status", BookingStatus.class);
+        }
+
+        public Long getEmployeeId() {
+            return tuple.get("employeeId", Long.class);
+        }
+
+        public String getEmployeeName() {
+            return tuple.get("employeeName", String.class);
+        }
+
+        public Long getProductId() {
+            return tuple.get("productId", Long.class);
+        }
+
+        public String getProductName() {
+            return tuple.get("productName", String.class);
+        }
+
+        public int getProductDuration() {
+            return tuple.get("productDuration", Integer.class);
+        }
+
+        public Long getCustomerId() {
+            return tuple.get("customerId", Long.class);
+        }
+
+        public String getCustomerPreferredName() {
+            return tuple.get("customerPreferredName", String.class);
+        }
+
+        public String getCustomerFullName() {
+            return tuple.get("customerFullName", String.class);
+        }
+
+        public String getCustomerPhoneNumber() {
+            return tuple.get("customerPhoneNumber", String.class);
+        }
+
+        public LocalDate getDate() {
+            return tuple.get("date", LocalDate.class);
+        }
+
+        public int getStartMinute() {
+            return tuple.get("startMinute", Integer.class);
+        }
+    }
+}
@@ -3,12 +3,47 @@ package com.rmit.sept.mon15307.backend.Repositories;
 import com.rmit.sept.mon15307.backend.model.Employee;
 import com.rmit.sept.mon15307.backend.model.Product;
 import com.rmit.sept.mon15307.backend.model.UserAccount;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
 
 @Repository
 public interface EmployeeRepository extends CrudRepository<Employee, Long> {
     Employee findByEmployeeId(Long employeeId);
 
     Employee findEmployeeByUser(UserAccount user);
-}
\ No newline at end of file
+
+    // users fetched in the same query, rather than one query per employee
+    @Query("select e from Employee e join fetch e.user")
+    List<Employee> findAllWithUser();
+
+    @Query("select distinct e from Employee e join fetch e.user join e.products p " +
+           "where p = ?1")
+    List<Employee> findEmployeesByProduct(Product product);
+
+    // Joins the caller's transaction, so the bump commits with the changes it marks
+    // and holds the employee's row lock until then
+    @Transactional
+    @Modifying
+    @Query("update Employee e set e.availabilityVersion = e.availabilityVersion + ?2 " +
+           "where e.employeeId = ?1")
+    int incrementAvailabilityVersion(Long employeeId, long changes);
+
+    @Query("select e.availabilityVersion from Employee e where e.employeeId = ?1")
+    Long findAvailabilityVersion(Long employeeId);
+
+    @Query("select e.employeeId as employeeId, e.availabilityVersion as version " +
+           "from Employee e where e.employeeId in ?1")
+    List<AvailabilityVersion> findAvailabilityVersions(Collection<Long> employeeIds);
+
+    interface AvailabilityVersion {
+        Long getEmployeeId();
+
+        Long getVersion();
+    }
+}
@@ -0,0 +1,27 @@
+package com.rmit.sept.mon15307.backend.Repositories;
+
+import com.rmit.sept.mon15307.backend.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+@Repository
+public interface IdempotencyRecordRepository extends CrudRepository<IdempotencyRecord, Long> {
+    IdempotencyRecord findByUserIdAndIdempotencyKeyAndCreatedAtAfter(
+        Long userId, String idempotencyKey, Date createdAfter
+    );
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.createdAt < ?1")
+    void deleteCreatedBefore(Date createdBefore);
+
+    @Transactional
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.userId = ?1 and r.idempotencyKey = ?2 and r.createdAt < ?3")
+    int deleteByKeyCreatedBefore(Long userId, String idempotencyKey, Date createdBefore);
+}
@@ -0,0 +1,20 @@
+package com.rmit.sept.mon15307.backend.Repositories;
+
+import com.rmit.sept.mon15307.backend.model.ResourceVersion;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+@Repository
+public interface ResourceVersionRepository extends CrudRepository<ResourceVersion, String> {
+    @Query("select v.version from ResourceVersion v where v.name = ?1")
+    Long findVersion(String name);
+
+    // 0 when the resource has no row yet
+    @Transactional
+    @Modifying
+    @Query("update ResourceVersion v set v.version = v.version + 1 where v.name = ?1")
+    int incrementVersion(String name);
+}
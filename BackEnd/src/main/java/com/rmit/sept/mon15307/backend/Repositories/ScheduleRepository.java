@@ -6,6 +6,7 @@ import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 
 @Repository
 public interface ScheduleRepository extends CrudRepository<Schedule, Long> {
@@ -14,4 +15,11 @@ public interface ScheduleRepository extends CrudRepository<Schedule, Long> {
     Iterable<Schedule> findSchedulesByEmployeeAndDateBetween(Employee employee,
                                                              LocalDate startDate,
                                                              LocalDate endDate);
+
+    Iterable<Schedule> findSchedulesByEmployeeInAndDateBetween(Collection<Employee> employees,
+                                                               LocalDate startDate,
+                                                               LocalDate endDate);
+
+    Iterable<Schedule> findSchedulesByEmployeeInAndDateIn(Collection<Employee> employees,
+                                                          Collection<LocalDate> dates);
 }
@@ -2,13 +2,26 @@ package com.rmit.sept.mon15307.backend.Repositories;
 
 import com.rmit.sept.mon15307.backend.model.UserAccount;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
 public interface UserRepository extends CrudRepository<UserAccount, Long> {
 
         UserAccount findByUserId(Long userId);
         UserAccount findByUsername(String username);
-        
+
+        @Query("select u.tokenVersion from UserAccount u where u.userId = :userId")
+        Long findTokenVersionByUserId(@Param("userId") Long userId);
+
+        // cleared, so a user loaded afterwards in the same request has the new version
+        @Modifying(clearAutomatically = true)
+        @Transactional
+        @Query("update UserAccount u set u.tokenVersion = u.tokenVersion + 1 where u.userId = :userId")
+        int incrementTokenVersion(@Param("userId") Long userId);
+
 }
\ No newline at end of file
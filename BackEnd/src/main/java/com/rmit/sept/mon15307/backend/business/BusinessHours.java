@@ -0,0 +1,54 @@
+package com.rmit.sept.mon15307.backend.business;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Map;
+
+// Opening hours and slot length, compiled once at startup into a slot table per
+// day of the week
+@Component
+@EnableConfigurationProperties(BusinessHoursProperties.class)
+public class BusinessHours {
+    // open hours when none are configured: 10am – 5pm every day
+    private static final String DEFAULT_HOURS = "10:00-17:00";
+
+    private final DaySlots[] slotsByDay = new DaySlots[DayOfWeek.values().length];
+
+    public BusinessHours(BusinessHoursProperties properties) {
+        Map<DayOfWeek, String> days = properties.getDays();
+
+        for (DayOfWeek day : DayOfWeek.values()) {
+            String hours = days.isEmpty() ? DEFAULT_HOURS : days.get(day);
+            this.slotsByDay[day.ordinal()] = isClosed(hours)
+                                             ? DaySlots.CLOSED
+                                             : compile(day, hours, properties.getSlotMinutes());
+        }
+    }
+
+    private static boolean isClosed(String hours) {
+        return hours == null || hours.trim().isEmpty() || hours.trim().equalsIgnoreCase("closed");
+    }
+
+    private static DaySlots compile(DayOfWeek day, String hours, int slotMinutes) {
+        String[] range = hours.trim().split("-");
+        int open = range.length == 2 ? DaySlots.minuteOf(range[0].trim()) : -1;
+        int close = range.length == 2 ? DaySlots.minuteOf(range[1].trim()) : -1;
+
+        if (open < 0 || close < open) {
+            throw new IllegalArgumentException("Invalid opening hours for " + day + ": " + hours);
+        }
+
+        return new DaySlots(open, close, slotMinutes);
+    }
+
+    public DaySlots forDay(DayOfWeek day) {
+        return slotsByDay[day.ordinal()];
+    }
+
+    public DaySlots forDate(LocalDate date) {
+        return this.forDay(date.getDayOfWeek());
+    }
+}
@@ -0,0 +1,33 @@
+package com.rmit.sept.mon15307.backend.business;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.DayOfWeek;
+import java.util.EnumMap;
+import java.util.Map;
+
+// booking.hours.* settings, see application.properties
+@ConfigurationProperties(prefix = "booking.hours")
+public class BusinessHoursProperties {
+    private int slotMinutes = 30;
+
+    // opening hours per day of the week as "HH:mm-HH:mm"; days left out, blank
+    // or "closed" are closed
+    private Map<DayOfWeek, String> days = new EnumMap<>(DayOfWeek.class);
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public void setSlotMinutes(int slotMinutes) {
+        this.slotMinutes = slotMinutes;
+    }
+
+    public Map<DayOfWeek, String> getDays() {
+        return days;
+    }
+
+    public void setDays(Map<DayOfWeek, String> days) {
+        this.days = days;
+    }
+}
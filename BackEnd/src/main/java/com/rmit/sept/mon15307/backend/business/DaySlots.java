@@ -0,0 +1,202 @@
+package com.rmit.sept.mon15307.backend.business;
+
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Precompiled, immutable slot table for one day of the week. Slot i starts at
+// opening time + i * slot length; lookups by minute of the day are array reads.
+public final class DaySlots {
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    // bookings claim time in blocks of this many minutes, whatever the slot length,
+    // so slot boundaries must fall on them
+    public static final int CLAIM_MINUTES = 5;
+
+    public static final DaySlots CLOSED = new DaySlots(0, 0, 30);
+
+    private final int slotMinutes;
+
+    // slot -> minute of the day it starts at
+    private final int[] startMinutes;
+
+    // slot -> "HH:mm"
+    private final String[] times;
+
+    // minute of the day -> slot starting at that minute, or -1
+    private final byte[] slotAtMinute = new byte[MINUTES_PER_DAY];
+
+    private final long allSlots;
+
+    private final SlotOccupancy empty;
+
+    DaySlots(int openMinute, int closeMinute, int slotMinutes) {
+        if (slotMinutes <= 0) {
+            throw new IllegalArgumentException("Slot length must be positive");
+        }
+        if (slotMinutes % CLAIM_MINUTES != 0 || openMinute % CLAIM_MINUTES != 0) {
+            throw new IllegalArgumentException(
+                "Slot length and opening time must be multiples of " + CLAIM_MINUTES + " minutes");
+        }
+
+        int slotCount = Math.max(0, (closeMinute - openMinute) / slotMinutes);
+        if (slotCount > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " slots per day supported");
+        }
+
+        this.slotMinutes = slotMinutes;
+        this.startMinutes = new int[slotCount];
+        this.times = new String[slotCount];
+        Arrays.fill(this.slotAtMinute, (byte) -1);
+
+        for (int i = 0; i < slotCount; i++) {
+            int minute = openMinute + i * slotMinutes;
+            this.startMinutes[i] = minute;
+            this.times[i] = String.format("%02d:%02d", minute / 60, minute % 60);
+            this.slotAtMinute[minute] = (byte) i;
+        }
+
+        this.allSlots = slotCount == Long.SIZE ? -1L : (1L << slotCount) - 1;
+        this.empty = new SlotOccupancy(this, 0L);
+    }
+
+    // Minute of the day of an "HH:mm" time, or -1 if it isn't one
+    public static int minuteOf(String time) {
+        if (time == null || time.length() != 5 || time.charAt(2) != ':') {
+            return -1;
+        }
+
+        int hours = digitsAt(time, 0);
+        int minutes = digitsAt(time, 3);
+        if (hours < 0 || hours > 23 || minutes < 0 || minutes > 59) {
+            return -1;
+        }
+        return hours * 60 + minutes;
+    }
+
+    public static int minuteOf(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    private static int digitsAt(String time, int index) {
+        int tens = time.charAt(index) - '0';
+        int ones = time.charAt(index + 1) - '0';
+        if (tens < 0 || tens > 9 || ones < 0 || ones > 9) {
+            return -1;
+        }
+        return tens * 10 + ones;
+    }
+
+    public int getSlotMinutes() {
+        return slotMinutes;
+    }
+
+    public int getSlotCount() {
+        return startMinutes.length;
+    }
+
+    public long getAllSlots() {
+        return allSlots;
+    }
+
+    // Occupancy of this day with nothing booked
+    public SlotOccupancy empty() {
+        return empty;
+    }
+
+    // Slot starting at the given minute of the day, or -1 if no slot starts then
+    public int slotAt(int minute) {
+        if (minute < 0 || minute >= MINUTES_PER_DAY) {
+            return -1;
+        }
+        return slotAtMinute[minute];
+    }
+
+    // Slot starting at the given time ("HH:mm"), or -1 if it isn't a slot
+    public int slotOf(String time) {
+        return this.slotAt(minuteOf(time));
+    }
+
+    public int startMinuteOf(int slot) {
+        return startMinutes[slot];
+    }
+
+    public String timeOf(int slot) {
+        return times[slot];
+    }
+
+    // Number of slots needed to fit a booking of the given length
+    public int slotsFor(int durationMinutes) {
+        return Math.max(1, (durationMinutes + slotMinutes - 1) / slotMinutes);
+    }
+
+    // Whether slotCount slots starting at startSlot all fall within the day
+    public boolean fits(int startSlot, int slotCount) {
+        return startSlot >= 0 && slotCount > 0 && slotCount <= startMinutes.length - startSlot;
+    }
+
+    // Mask of slotCount slots starting at startSlot, clipped to the end of the day
+    public long span(int startSlot, int slotCount) {
+        if (startSlot < 0 || startSlot >= startMinutes.length || slotCount <= 0) {
+            return 0L;
+        }
+
+        long mask = slotCount >= Long.SIZE ? -1L : (1L << slotCount) - 1;
+        return (mask << startSlot) & allSlots;
+    }
+
+    // Mask of the slots overlapping a booking which starts at the given minute,
+    // whether or not that minute is on a slot boundary
+    public long covering(int startMinute, int durationMinutes) {
+        int endMinute = startMinute + Math.max(durationMinutes, 1);
+        long mask = 0L;
+        for (int i = 0; i < startMinutes.length; i++) {
+            if (startMinutes[i] < endMinute && startMinutes[i] + slotMinutes > startMinute) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    // Start minutes of the claim blocks overlapping [startMinute, endMinute)
+    public static List<Integer> claimMinutes(int startMinute, int endMinute) {
+        int first = startMinute - startMinute % CLAIM_MINUTES;
+        int end = Math.max(endMinute, startMinute + 1);
+        List<Integer> minutes = new ArrayList<>((end - first + CLAIM_MINUTES - 1) / CLAIM_MINUTES);
+        for (int minute = first; minute < end; minute += CLAIM_MINUTES) {
+            minutes.add(minute);
+        }
+        return minutes;
+    }
+
+    // Mask of slots which start strictly after the given minute of the day
+    public long slotsStartingAfter(int minute) {
+        return this.slotsStartingBetween(minute + 1, MINUTES_PER_DAY);
+    }
+
+    // Mask of slots which have started by the given minute of the day
+    public long slotsStartedBy(int minute) {
+        return allSlots & ~this.slotsStartingAfter(minute);
+    }
+
+    // Mask of slots which start within [fromMinute, toMinute], both inclusive
+    public long slotsStartingBetween(int fromMinute, int toMinute) {
+        long mask = 0L;
+        for (int i = 0; i < startMinutes.length; i++) {
+            if (startMinutes[i] >= fromMinute && startMinutes[i] <= toMinute) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+    // Slot start times for every set bit of the mask, in day order
+    public List<String> timesOf(long mask) {
+        List<String> times = new ArrayList<>(Long.bitCount(mask));
+        for (long bits = mask & allSlots; bits != 0; bits &= bits - 1) {
+            times.add(this.times[Long.numberOfTrailingZeros(bits)]);
+        }
+        return times;
+    }
+}
@@ -0,0 +1,48 @@
+package com.rmit.sept.mon15307.backend.business;
+
+// Compact per-day view of which time slots of a schedule are taken.
+// Bit i is set when the i-th slot of the day is covered by a booking, so
+// conflict checks and free slot listings are plain bitwise operations.
+public final class SlotOccupancy {
+    private final DaySlots slots;
+    private final long occupied;
+
+    SlotOccupancy(DaySlots slots, long occupied) {
+        this.slots = slots;
+        this.occupied = occupied;
+    }
+
+    public DaySlots getSlots() {
+        return this.slots;
+    }
+
+    public boolean isFree(int startSlot, int slotCount) {
+        return this.slots.fits(startSlot, slotCount)
+            && (this.occupied & this.slots.span(startSlot, slotCount)) == 0;
+    }
+
+    public SlotOccupancy withBooking(int startSlot, int slotCount) {
+        return this.withSlots(this.slots.span(startSlot, slotCount));
+    }
+
+    public SlotOccupancy withSlots(long taken) {
+        return new SlotOccupancy(this.slots, this.occupied | (taken & this.slots.getAllSlots()));
+    }
+
+    // Mask of the slots at which a booking of slotCount slots could start,
+    // i.e. the same test as isFree() applied to every slot of the day at once
+    public long freeStarts(int slotCount) {
+        if (slotCount > Long.SIZE) {
+            return 0L;
+        }
+
+        // slot i stays set only if slots i .. i + slotCount - 1 are all free;
+        // slots past the end of the day count as taken, as a booking must end by closing
+        long free = ~this.occupied & this.slots.getAllSlots();
+        long starts = free;
+        for (int k = 1; k < slotCount; k++) {
+            starts &= free >>> k;
+        }
+        return starts;
+    }
+}
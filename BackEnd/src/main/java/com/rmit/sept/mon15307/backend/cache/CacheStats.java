@@ -0,0 +1,53 @@
+package com.rmit.sept.mon15307.backend.cache;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+
+// Point-in-time counters of an ExpiringCache
+public class CacheStats {
+    private final int size;
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long invalidations;
+
+    CacheStats(int size, long hits, long misses, long evictions, long invalidations) {
+        this.size = size;
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.invalidations = invalidations;
+    }
+
+    @JsonGetter("size")
+    public int getSize() {
+        return size;
+    }
+
+    @JsonGetter("hits")
+    public long getHits() {
+        return hits;
+    }
+
+    @JsonGetter("misses")
+    public long getMisses() {
+        return misses;
+    }
+
+    // entries dropped for being least recently used when full, or for expiring
+    @JsonGetter("evictions")
+    public long getEvictions() {
+        return evictions;
+    }
+
+    // entries removed explicitly because their value went stale
+    @JsonGetter("invalidations")
+    public long getInvalidations() {
+        return invalidations;
+    }
+
+    @JsonGetter("hit_ratio")
+    public double getHitRatio() {
+        long requests = hits + misses;
+        return requests == 0 ? 0 : (double) hits / requests;
+    }
+}
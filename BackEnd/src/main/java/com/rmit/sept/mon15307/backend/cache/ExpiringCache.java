@@ -0,0 +1,89 @@
+package com.rmit.sept.mon15307.backend.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Small thread-safe cache holding at most maxSize entries, each for at most ttlMillis.
+// When full, the least recently used entry is evicted.
+public class ExpiringCache<K, V> {
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public ExpiringCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+
+        // access order, so the eldest entry is the least recently used one
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringCache.this.maxSize) {
+                    ExpiringCache.this.evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public synchronized V get(K key) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+
+        if (entry.isExpired(System.nanoTime())) {
+            this.entries.remove(key);
+            this.evictions++;
+            this.misses++;
+            return null;
+        }
+
+        this.hits++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        this.entries.put(key, new Entry<>(value, System.nanoTime() + this.ttlNanos));
+    }
+
+    public synchronized void remove(K key) {
+        if (this.entries.remove(key) != null) {
+            this.invalidations++;
+        }
+    }
+
+    public synchronized CacheStats stats() {
+        return new CacheStats(this.entries.size(),
+                              this.hits,
+                              this.misses,
+                              this.evictions,
+                              this.invalidations
+        );
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isExpired(long now) {
+            return now - this.expiresAt >= 0;
+        }
+    }
+}
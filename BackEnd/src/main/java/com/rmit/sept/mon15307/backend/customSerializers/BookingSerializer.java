@@ -3,14 +3,19 @@ package com.rmit.sept.mon15307.backend.customSerializers;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository.BookingListing;
 import com.rmit.sept.mon15307.backend.model.Booking;
+import com.rmit.sept.mon15307.backend.model.enumeration.BookingStatus;
 
 import java.io.IOException;
-import java.time.LocalTime;
+import java.time.LocalDate;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
+import java.time.ZoneOffset;
+import java.time.zone.ZoneRules;
 
 public class BookingSerializer extends StdSerializer<Booking> {
+    // TODO: pull from app config
+    private static final ZoneRules ZONE_RULES = ZoneId.of("Australia/Melbourne").getRules();
 
     public BookingSerializer() {
         this(null);
@@ -21,42 +26,57 @@ public class BookingSerializer extends StdSerializer<Booking> {
     }
 
     static JsonGenerator serializeBookingFields(JsonGenerator jsonGenerator, Booking booking)
+        throws IOException {
+        return serializeBookingFields(jsonGenerator, new EntityListing(booking));
+    }
+
+    static JsonGenerator serializeBookingFields(JsonGenerator jsonGenerator, BookingListing booking)
         throws IOException {
         jsonGenerator.writeStringField("id", booking.getBookingId().toString());
 
         jsonGenerator.writeStringField("status", booking.getStatus().toString().toLowerCase());
 
         jsonGenerator.writeObjectFieldStart("staff_member");
-        jsonGenerator.writeStringField("id", booking.getEmployee().getId());
-        jsonGenerator.writeStringField("name", booking.getEmployee().getName());
+        jsonGenerator.writeStringField("id", booking.getEmployeeId().toString());
+        jsonGenerator.writeStringField("name", booking.getEmployeeName());
         jsonGenerator.writeEndObject();
 
         jsonGenerator.writeObjectFieldStart("product");
-        jsonGenerator.writeStringField("id", booking.getProduct().getId());
-        jsonGenerator.writeStringField("name", booking.getProduct().getName());
-        jsonGenerator.writeNumberField("duration", booking.getProduct().getDuration());
+        jsonGenerator.writeStringField("id", booking.getProductId().toString());
+        jsonGenerator.writeStringField("name", booking.getProductName());
+        jsonGenerator.writeNumberField("duration", booking.getProductDuration());
         jsonGenerator.writeEndObject();
 
         jsonGenerator.writeObjectFieldStart("user");
-        jsonGenerator.writeNumberField("id", booking.getCustomer().getUserId());
-        jsonGenerator.writeStringField("preferredName", booking.getCustomer().getPreferredName());
-        jsonGenerator.writeStringField("fullName", booking.getCustomer().getFullName());
-        jsonGenerator.writeStringField("phoneNumber", booking.getCustomer().getPhoneNumber());
+        jsonGenerator.writeNumberField("id", booking.getCustomerId());
+        jsonGenerator.writeStringField("preferredName", booking.getCustomerPreferredName());
+        jsonGenerator.writeStringField("fullName", booking.getCustomerFullName());
+        jsonGenerator.writeStringField("phoneNumber", booking.getCustomerPhoneNumber());
         jsonGenerator.writeEndObject();
 
         jsonGenerator.writeStringField("appointment_time",
-                                       ZonedDateTime
-                                           .of(booking.getSchedule().getDate(),
-                                               LocalTime.parse(booking.getTime()),
-                                               // TODO: pull from app config
-                                               ZoneId.of("Australia/Melbourne")
-                                           )
-                                           .toOffsetDateTime()
-                                           .toString()
+                                       appointmentTime(booking.getDate(), booking.getStartMinute())
         );
         return jsonGenerator;
     }
 
+    // ISO-8601 with the zone's offset on that day, e.g. 2020-10-09T15:00+11:00
+    static String appointmentTime(LocalDate date, int startMinute) {
+        int hour = startMinute / 60;
+        int minute = startMinute % 60;
+        ZoneOffset offset = ZONE_RULES.getOffset(date.atTime(hour, minute));
+
+        StringBuilder time = new StringBuilder(22).append(date).append('T');
+        if (hour < 10) {
+            time.append('0');
+        }
+        time.append(hour).append(':');
+        if (minute < 10) {
+            time.append('0');
+        }
+        return time.append(minute).append(offset.getId()).toString();
+    }
+
     @Override
     public void serialize(
         Booking booking, JsonGenerator jsonGenerator, SerializerProvider serializerProvider
@@ -71,5 +91,65 @@ public class BookingSerializer extends StdSerializer<Booking> {
 
         jsonGenerator.writeEndObject();
     }
-}
 
+    // A loaded booking seen as the flat fields the listing queries select
+    private static class EntityListing implements BookingListing {
+        private final Booking booking;
+
+        EntityListing(Booking booking) {
+            this.booking = booking;
+        }
+
+        public Long getBookingId() {
+            return booking.getBookingId();
+        }
+
+        public BookingStatus getStatus() {
+            return booking.getStatus();
+        }
+
+        public Long getEmployeeId() {
+            return Long.valueOf(booking.getEmployee().getId());
+        }
+
+        public String getEmployeeName() {
+            return booking.getEmployee().getName();
+        }
+
+        public Long getProductId() {
+            return Long.valueOf(booking.getProduct().getId());
+        }
+
+        public String getProductName() {
+            return booking.getProduct().getName();
+        }
+
+        public int getProductDuration() {
+            return booking.getProduct().getDuration();
+        }
+
+        public Long getCustomerId() {
+            return booking.getCustomer().getUserId();
+        }
+
+        public String getCustomerPreferredName() {
+            return booking.getCustomer().getPreferredName();
+        }
+
+        public String getCustomerFullName() {
+            return booking.getCustomer().getFullName();
+        }
+
+        public String getCustomerPhoneNumber() {
+            return booking.getCustomer().getPhoneNumber();
+        }
+
+        public LocalDate getDate() {
+            return booking.getSchedule().getDate();
+        }
+
+        public int getStartMinute() {
+            return booking.getStartMinute();
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.rmit.sept.mon15307.backend.customSerializers;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository.BookingListing;
 import com.rmit.sept.mon15307.backend.model.Booking;
 import com.rmit.sept.mon15307.backend.model.BookingsList;
 
@@ -17,6 +18,21 @@ public class BookingsListSerializer extends StdSerializer<BookingsList> {
         super(t);
     }
 
+    // one element of the "bookings" array, shared with the streamed export
+    public static void writeBooking(JsonGenerator jsonGenerator, Booking booking)
+        throws IOException {
+        jsonGenerator.writeStartObject();
+        BookingSerializer.serializeBookingFields(jsonGenerator, booking);
+        jsonGenerator.writeEndObject();
+    }
+
+    public static void writeBooking(JsonGenerator jsonGenerator, BookingListing booking)
+        throws IOException {
+        jsonGenerator.writeStartObject();
+        BookingSerializer.serializeBookingFields(jsonGenerator, booking);
+        jsonGenerator.writeEndObject();
+    }
+
     @Override
     public void serialize(
         BookingsList bookingsList,
@@ -26,13 +42,16 @@ public class BookingsListSerializer extends StdSerializer<BookingsList> {
         jsonGenerator.writeStartObject();
         jsonGenerator.writeArrayFieldStart("bookings");
 
-        for (Booking booking : bookingsList) {
-            jsonGenerator.writeStartObject();
-            BookingSerializer.serializeBookingFields(jsonGenerator, booking);
-            jsonGenerator.writeEndObject();
+        for (BookingListing booking : bookingsList) {
+            writeBooking(jsonGenerator, booking);
         }
 
         jsonGenerator.writeEndArray();
+
+        if (bookingsList.isPaginated()) {
+            jsonGenerator.writeStringField("next_cursor", bookingsList.getNextCursor());
+        }
+
         jsonGenerator.writeEndObject();
     }
 }
@@ -0,0 +1,51 @@
+package com.rmit.sept.mon15307.backend.events;
+
+import java.time.LocalDate;
+
+// Published when a booking takes or frees slots on an employee's schedule
+public class AvailabilityChangedEvent {
+    private final String employeeId;
+    private final Long scheduleId;
+    private final LocalDate date;
+    private final long slots;
+    private final boolean taken;
+    private final long version;
+
+    public AvailabilityChangedEvent(
+        String employeeId, Long scheduleId, LocalDate date, long slots, boolean taken, long version
+    ) {
+        this.employeeId = employeeId;
+        this.scheduleId = scheduleId;
+        this.date = date;
+        this.slots = slots;
+        this.taken = taken;
+        this.version = version;
+    }
+
+    public String getEmployeeId() {
+        return employeeId;
+    }
+
+    public Long getScheduleId() {
+        return scheduleId;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
+    // mask of the affected slots of the schedule's day, see DaySlots
+    public long getSlots() {
+        return slots;
+    }
+
+    // true if the slots were booked, false if they were freed by a cancellation
+    public boolean isTaken() {
+        return taken;
+    }
+
+    // the employee's availability version this change moved it to
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,27 @@
+package com.rmit.sept.mon15307.backend.events;
+
+// Published when an employee's schedule for a day is created or edited
+public class ScheduleChangedEvent {
+    private final String employeeId;
+    private final Long scheduleId;
+    private final long version;
+
+    public ScheduleChangedEvent(String employeeId, Long scheduleId, long version) {
+        this.employeeId = employeeId;
+        this.scheduleId = scheduleId;
+        this.version = version;
+    }
+
+    public String getEmployeeId() {
+        return employeeId;
+    }
+
+    public Long getScheduleId() {
+        return scheduleId;
+    }
+
+    // the employee's availability version this change moved it to
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,14 @@
+package com.rmit.sept.mon15307.backend.events;
+
+// Published when a user's account details or roles are saved
+public class UserChangedEvent {
+    private final Long userId;
+
+    public UserChangedEvent(Long userId) {
+        this.userId = userId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+}
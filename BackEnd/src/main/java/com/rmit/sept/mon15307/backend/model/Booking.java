@@ -3,64 +3,68 @@ package com.rmit.sept.mon15307.backend.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.rmit.sept.mon15307.backend.customSerializers.BookingSerializer;
-import com.rmit.sept.mon15307.backend.exceptions.InvalidTimeSlotException;
 import com.rmit.sept.mon15307.backend.model.enumeration.BookingStatus;
 
 import javax.persistence.*;
 import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.util.Arrays;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
 
 @JsonSerialize(using = BookingSerializer.class)
 @Entity
+// everything BookingSerializer touches, loaded in the same query as the bookings
+@NamedEntityGraph(name = Booking.SERIALIZED_GRAPH, attributeNodes = {
+    @NamedAttributeNode("customer"),
+    @NamedAttributeNode(value = "employee", subgraph = "employee"),
+    @NamedAttributeNode("product"),
+    @NamedAttributeNode("schedule")
+}, subgraphs = @NamedSubgraph(name = "employee", attributeNodes = @NamedAttributeNode("user")))
+@Table(indexes = {
+    @Index(columnList = "schedule_id"),
+    // keyset pagination of booking lists, see BookingsRepository
+    @Index(columnList = "status, bookingId"),
+    @Index(columnList = "customer_user_id, status, bookingId"),
+    @Index(columnList = "employee_employee_id, status, bookingId"),
+    // date range filters of booking lists
+    @Index(columnList = "status, date"),
+    @Index(columnList = "customer_user_id, status, date"),
+    @Index(columnList = "employee_employee_id, status, date")
+})
 public class Booking {
-    // open hours: 10am – 5pm
-    // TODO: make configurable (new Business layer)
-    public static Set<String> permittedTimes = new HashSet<>(Arrays.asList(
-        "10:00",
-        "10:30",
-        "11:00",
-        "11:30",
-        "12:00",
-        "12:30",
-        "13:00",
-        "13:30",
-        "14:00",
-        "14:30",
-        "15:00",
-        "15:30",
-        "16:00",
-        "16:30"
-    ));
+    public static final String SERIALIZED_GRAPH = "Booking.serialized";
 
+    // sequence ids (rather than identity columns) let inserts be batched
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_seq")
+    @SequenceGenerator(name = "booking_seq", allocationSize = 50)
     private Long bookingId;
 
     @Enumerated(EnumType.STRING)
     private BookingStatus status;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @NotNull
     private UserAccount customer;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @NotNull
     private Employee employee;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @NotNull
     private Product product;
 
-    @ManyToOne(optional = false)
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
     @NotNull
     private Schedule schedule;
 
-    private String time;
+    // copied from the schedule so booking lists can filter on it without a join
+    private LocalDate date;
+
+    // minutes of the day at which the appointment starts and ends
+    private int startMinute;
+    private int endMinute;
 
     private Date createdAt;
     private Date cancelledAt;
@@ -110,18 +114,28 @@ public class Booking {
 
     public void setSchedule(Schedule schedule) {
         this.schedule = schedule;
+        this.date = schedule.getDate();
     }
 
-    public String getTime() {
-        return time;
+    public LocalDate getDate() {
+        return date;
     }
 
-    public void setTime(String time) {
-        if (!permittedTimes.contains(time)) {
-            throw new InvalidTimeSlotException("Time slot not supported");
-        }
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    // must be the start of one of the day's business hours slots, see BookingService
+    public void setStartMinute(int startMinute) {
+        this.startMinute = startMinute;
+    }
+
+    public int getEndMinute() {
+        return endMinute;
+    }
 
-        this.time = time;
+    public void setEndMinute(int endMinute) {
+        this.endMinute = endMinute;
     }
 
     public Date getCreatedAt() {
@@ -138,14 +152,12 @@ public class Booking {
 
     @JsonIgnore
     public LocalDateTime getStartTime() {
-        return LocalDateTime.of(this.schedule.getDate(), LocalTime.parse(this.time));
+        return this.date.atTime(this.startMinute / 60, this.startMinute % 60);
     }
 
     @JsonIgnore
     public LocalDateTime getEndTime() {
-        return LocalDateTime
-            .of(this.schedule.getDate(), LocalTime.parse(this.time))
-            .plusMinutes(this.product.getDuration());
+        return this.date.atStartOfDay().plusMinutes(this.endMinute);
     }
 
     @PrePersist
@@ -181,7 +193,9 @@ public class Booking {
         sb.append(", employee=").append(employee);
         sb.append(", product=").append(product);
         sb.append(", schedule=").append(schedule);
-        sb.append(", time='").append(time).append('\'');
+        sb.append(", date=").append(date);
+        sb.append(", startMinute=").append(startMinute);
+        sb.append(", endMinute=").append(endMinute);
         sb.append('}');
         return sb.toString();
     }
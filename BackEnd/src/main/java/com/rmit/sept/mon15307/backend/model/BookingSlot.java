@@ -0,0 +1,47 @@
+package com.rmit.sept.mon15307.backend.model;
+
+import javax.persistence.*;
+
+// One row for every block of DaySlots.CLAIM_MINUTES an active booking covers. The
+// unique constraint lets the database reject overlapping bookings, even when they
+// come from different nodes.
+@Entity
+@Table(uniqueConstraints = {@UniqueConstraint(columnNames = {"schedule_id", "start_minute"})})
+public class BookingSlot {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "booking_slot_seq")
+    @SequenceGenerator(name = "booking_slot_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "booking_id", nullable = false)
+    private Booking booking;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    @JoinColumn(name = "schedule_id", nullable = false)
+    private Schedule schedule;
+
+    // minute of the day at which the covered block starts
+    @Column(name = "start_minute")
+    private int startMinute;
+
+    public BookingSlot() {}
+
+    public BookingSlot(Booking booking, int startMinute) {
+        this.booking = booking;
+        this.schedule = booking.getSchedule();
+        this.startMinute = startMinute;
+    }
+
+    public Booking getBooking() {
+        return booking;
+    }
+
+    public Schedule getSchedule() {
+        return schedule;
+    }
+
+    public int getStartMinute() {
+        return startMinute;
+    }
+}
@@ -1,21 +1,43 @@
 package com.rmit.sept.mon15307.backend.model;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository.BookingListing;
 import com.rmit.sept.mon15307.backend.customSerializers.BookingsListSerializer;
 
 import java.util.Iterator;
 
 @JsonSerialize(using = BookingsListSerializer.class)
-public class BookingsList implements Iterable<Booking> {
+public class BookingsList implements Iterable<BookingListing> {
 
-    private final Iterable<Booking> bookingsList;
+    private final Iterable<BookingListing> bookingsList;
 
-    public BookingsList(Iterable<Booking> bookingsList) {
+    private final boolean paginated;
+
+    // cursor for the page after this one, null on the last page
+    private final String nextCursor;
+
+    public BookingsList(Iterable<BookingListing> bookingsList) {
+        this.bookingsList = bookingsList;
+        this.paginated = false;
+        this.nextCursor = null;
+    }
+
+    public BookingsList(Iterable<BookingListing> bookingsList, String nextCursor) {
         this.bookingsList = bookingsList;
+        this.paginated = true;
+        this.nextCursor = nextCursor;
+    }
+
+    public boolean isPaginated() {
+        return this.paginated;
+    }
+
+    public String getNextCursor() {
+        return this.nextCursor;
     }
 
     @Override
-    public Iterator<Booking> iterator() {
+    public Iterator<BookingListing> iterator() {
         return this.bookingsList.iterator();
     }
 }
@@ -40,6 +40,14 @@ public class Employee {
     @JsonIgnore
     private List<Schedule> schedules;
 
+    // Bumped once per change in the same transaction as any booking or schedule
+    // change of the employee, see EmployeeRepository. Only ever goes up, so every
+    // node sees a change, including a schedule being removed. Entity saves never
+    // write it, so a stale copy can't roll it back.
+    @Column(updatable = false, columnDefinition = "bigint default 0 not null")
+    @JsonIgnore
+    private long availabilityVersion;
+
     public boolean isScheduled(LocalDate date) {
         // Inefficient but that's fine because there won't be much data to search
         // through
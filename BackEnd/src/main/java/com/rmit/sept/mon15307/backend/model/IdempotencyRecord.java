@@ -0,0 +1,51 @@
+package com.rmit.sept.mon15307.backend.model;
+
+import javax.persistence.*;
+import javax.validation.constraints.NotNull;
+import java.util.Date;
+
+@Entity
+@Table(
+    uniqueConstraints = {@UniqueConstraint(columnNames = {"user_id", "idempotency_key"})},
+    indexes = {@Index(columnList = "created_at")}
+)
+public class IdempotencyRecord {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @NotNull
+    @Column(name = "user_id")
+    private Long userId;
+
+    @NotNull
+    @Column(name = "idempotency_key")
+    private String idempotencyKey;
+
+    @NotNull
+    private Long bookingId;
+
+    @Column(name = "created_at")
+    private Date createdAt;
+
+    public IdempotencyRecord() {}
+
+    public IdempotencyRecord(Long userId, String idempotencyKey, Long bookingId) {
+        this.userId = userId;
+        this.idempotencyKey = idempotencyKey;
+        this.bookingId = bookingId;
+    }
+
+    public Long getBookingId() {
+        return bookingId;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        this.createdAt = new Date();
+    }
+}
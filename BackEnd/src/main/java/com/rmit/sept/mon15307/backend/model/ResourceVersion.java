@@ -0,0 +1,28 @@
+package com.rmit.sept.mon15307.backend.model;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+// Change counter of a resource shared by every node, see ResourceVersions
+@Entity
+public class ResourceVersion {
+    @Id
+    private String name;
+
+    private long version;
+
+    public ResourceVersion() {}
+
+    public ResourceVersion(String name, long version) {
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -41,6 +41,10 @@ public class Schedule {
         return this.date;
     }
 
+    public Employee getEmployee() {
+        return this.employee;
+    }
+
     public boolean isScheduled() {
         return this.scheduled;
     }
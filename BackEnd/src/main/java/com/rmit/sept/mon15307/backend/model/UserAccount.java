@@ -63,6 +63,12 @@ public class UserAccount implements UserDetails {
     @JsonView(UserAccountViews.Internal.class)
     private String confirmPassword;
 
+    // carried in the user's tokens; bumped to revoke all of them, see UserRepository.
+    // Saving the entity never writes it, so a stale copy can't roll it back
+    @Column(updatable = false)
+    @JsonIgnore
+    private long tokenVersion;
+
     @CreatedDate
     private Date createdAt;
 
@@ -136,6 +142,10 @@ public class UserAccount implements UserDetails {
         isCustomer = customer;
     }
 
+    public long getTokenVersion() {
+        return tokenVersion;
+    }
+
     @JsonGetter("role")
     @JsonView(UserAccountViews.Public.class)
     public String getRole() {
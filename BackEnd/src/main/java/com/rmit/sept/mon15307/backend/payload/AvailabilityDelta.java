@@ -0,0 +1,37 @@
+package com.rmit.sept.mon15307.backend.payload;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonGetter;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// Change to an employee's availability pushed to /api/staff/{id}/times/stream
+public class AvailabilityDelta {
+    private final String staffId;
+    private final LocalDate date;
+    private final List<String> times;
+
+    public AvailabilityDelta(String staffId, LocalDate date, List<String> times) {
+        this.staffId = staffId;
+        this.date = date;
+        this.times = times;
+    }
+
+    @JsonGetter("staff_id")
+    public String getStaffId() {
+        return staffId;
+    }
+
+    @JsonGetter("date")
+    @JsonFormat(pattern = "yyyy-MM-dd")
+    public LocalDate getDate() {
+        return date;
+    }
+
+    // start times of the slots that were taken or freed
+    @JsonGetter("times")
+    public List<String> getTimes() {
+        return times;
+    }
+}
@@ -0,0 +1,128 @@
+package com.rmit.sept.mon15307.backend.payload;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
+import com.rmit.sept.mon15307.backend.business.DaySlots;
+import com.rmit.sept.mon15307.backend.model.Employee;
+import com.rmit.sept.mon15307.backend.services.AvailabilityService;
+import com.rmit.sept.mon15307.backend.services.AvailabilityService.ScheduledDay;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Employee x day x slot availability, written out a batch of employees at a time
+// instead of being built up in memory first:
+//
+// {"days": [{"date": "2020-10-01", "times": ["10:00", ...]}, ...],
+//  "staff": [{"staff_id": "1", "name": "...", "slots": ["0110...", null, ...]}, ...]}
+//
+// Each employee has one entry per day, null if they aren't scheduled that day, else
+// one character per slot of the day: '1' if a booking can start then, '0' if not.
+public class AvailabilityGrid implements StreamingResponseBody {
+    private static final int BATCH_SIZE = 50;
+
+    private final JsonFactory jsonFactory;
+    private final BusinessHours businessHours;
+    private final AvailabilityService availabilityService;
+    private final List<Employee> employees;
+    private final LocalDate from;
+    private final int dayCount;
+    private final int durationMinutes;
+
+    public AvailabilityGrid(
+        JsonFactory jsonFactory,
+        BusinessHours businessHours,
+        AvailabilityService availabilityService,
+        List<Employee> employees,
+        LocalDate from,
+        LocalDate to,
+        int durationMinutes
+    ) {
+        this.jsonFactory = jsonFactory;
+        this.businessHours = businessHours;
+        this.availabilityService = availabilityService;
+        this.employees = employees;
+        this.from = from;
+        this.dayCount = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        this.durationMinutes = durationMinutes;
+    }
+
+    @Override
+    public void writeTo(OutputStream outputStream) throws IOException {
+        try (JsonGenerator json = jsonFactory.createGenerator(outputStream, JsonEncoding.UTF8)) {
+            json.writeStartObject();
+
+            json.writeArrayFieldStart("days");
+            for (int i = 0; i < dayCount; i++) {
+                LocalDate date = from.plusDays(i);
+                DaySlots slots = businessHours.forDate(date);
+
+                json.writeStartObject();
+                json.writeStringField("date", date.toString());
+                json.writeArrayFieldStart("times");
+                for (String time : slots.timesOf(slots.getAllSlots())) {
+                    json.writeString(time);
+                }
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+            json.writeEndArray();
+
+            json.writeArrayFieldStart("staff");
+            for (int start = 0; start < employees.size(); start += BATCH_SIZE) {
+                List<Employee> batch =
+                    employees.subList(start, Math.min(start + BATCH_SIZE, employees.size()));
+                Map<String, List<ScheduledDay>> scheduledDays =
+                    availabilityService.getScheduledDays(batch);
+
+                for (Employee employee : batch) {
+                    this.writeEmployee(json, employee, scheduledDays.get(employee.getId()));
+                }
+                json.flush();
+            }
+            json.writeEndArray();
+
+            json.writeEndObject();
+        }
+    }
+
+    private void writeEmployee(JsonGenerator json, Employee employee, List<ScheduledDay> days)
+        throws IOException {
+        Map<LocalDate, ScheduledDay> daysByDate = new HashMap<>();
+        for (ScheduledDay day : days) {
+            daysByDate.put(day.getDate(), day);
+        }
+
+        json.writeStartObject();
+        json.writeStringField("staff_id", employee.getId());
+        json.writeStringField("name", employee.getName());
+        json.writeArrayFieldStart("slots");
+        for (int i = 0; i < dayCount; i++) {
+            ScheduledDay day = daysByDate.get(from.plusDays(i));
+            if (day == null) {
+                json.writeNull();
+                continue;
+            }
+
+            DaySlots slots = day.getOccupancy().getSlots();
+            long free = day.getOccupancy().freeStarts(slots.slotsFor(durationMinutes)) &
+                        EmployeeTimesResponse.bookableSlots(day.getDate(), slots);
+
+            char[] row = new char[slots.getSlotCount()];
+            for (int slot = 0; slot < row.length; slot++) {
+                row[slot] = (free & (1L << slot)) != 0 ? '1' : '0';
+            }
+            json.writeString(row, 0, row.length);
+        }
+        json.writeEndArray();
+        json.writeEndObject();
+    }
+}
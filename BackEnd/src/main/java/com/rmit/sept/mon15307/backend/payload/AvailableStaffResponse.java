@@ -0,0 +1,76 @@
+package com.rmit.sept.mon15307.backend.payload;
+
+import com.fasterxml.jackson.annotation.JsonGetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.rmit.sept.mon15307.backend.business.DaySlots;
+import com.rmit.sept.mon15307.backend.exceptions.ScheduleFullyBookedException;
+import com.rmit.sept.mon15307.backend.model.Employee;
+import com.rmit.sept.mon15307.backend.services.AvailabilityService.ScheduledDay;
+
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+// An employee who can take a booking of the searched product within the searched
+// range, along with the start times at which they can take it
+public class AvailableStaffResponse {
+    private final Employee employee;
+    private final List<EmployeeTimesResponse> days = new ArrayList<>();
+
+    public AvailableStaffResponse(
+        Employee employee,
+        List<ScheduledDay> scheduledDays,
+        int durationMinutes,
+        LocalDateTime from,
+        LocalDateTime to
+    ) {
+        this.employee = employee;
+
+        for (ScheduledDay day : scheduledDays) {
+            if (day.getDate().isBefore(from.toLocalDate()) ||
+                day.getDate().isAfter(to.toLocalDate())) {
+                continue;
+            }
+
+            LocalTime start = day.getDate().isEqual(from.toLocalDate())
+                              ? from.toLocalTime()
+                              : LocalTime.MIN;
+            LocalTime end = day.getDate().isEqual(to.toLocalDate())
+                            ? to.toLocalTime()
+                            : LocalTime.MAX;
+
+            DaySlots slots = day.getOccupancy().getSlots();
+            long free = day.getOccupancy().freeStarts(slots.slotsFor(durationMinutes)) &
+                        slots.slotsStartingBetween(DaySlots.minuteOf(start),
+                                                   DaySlots.minuteOf(end)
+                        ) &
+                        EmployeeTimesResponse.bookableSlots(day.getDate(), slots);
+            try {
+                this.days.add(new EmployeeTimesResponse(day.getDate(), slots, free));
+            } catch (ScheduleFullyBookedException e) {
+                // skip this day
+            }
+        }
+    }
+
+    @JsonIgnore
+    public boolean isAvailable() {
+        return !this.days.isEmpty();
+    }
+
+    @JsonGetter("staff_id")
+    public String getId() {
+        return this.employee.getId();
+    }
+
+    @JsonGetter("name")
+    public String getName() {
+        return this.employee.getName();
+    }
+
+    @JsonGetter("days")
+    public List<EmployeeTimesResponse> getDays() {
+        return this.days;
+    }
+}
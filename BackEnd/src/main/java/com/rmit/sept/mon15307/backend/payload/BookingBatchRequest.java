@@ -0,0 +1,24 @@
+package com.rmit.sept.mon15307.backend.payload;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import java.util.List;
+
+public class BookingBatchRequest {
+    // kept small enough to insert in a single transaction
+    @NotNull
+    @NotEmpty
+    @Size(max = 100)
+    @Valid
+    private List<BookingRequest> bookings;
+
+    public List<BookingRequest> getBookings() {
+        return bookings;
+    }
+
+    public void setBookings(List<BookingRequest> bookings) {
+        this.bookings = bookings;
+    }
+}
@@ -0,0 +1,73 @@
+package com.rmit.sept.mon15307.backend.payload;
+
+import com.rmit.sept.mon15307.backend.model.Employee;
+import com.rmit.sept.mon15307.backend.model.Product;
+import com.rmit.sept.mon15307.backend.model.UserAccount;
+import com.rmit.sept.mon15307.backend.model.enumeration.BookingStatus;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+// Which bookings to list; everything but the statuses is optional
+public class BookingFilter {
+    private Collection<BookingStatus> statuses;
+
+    private UserAccount customer;
+
+    private Employee employee;
+
+    private Product product;
+
+    // appointment dates, both inclusive
+    private LocalDate from;
+
+    private LocalDate to;
+
+    public BookingFilter(Collection<BookingStatus> statuses) {
+        this.statuses = statuses;
+    }
+
+    public Collection<BookingStatus> getStatuses() {
+        return statuses;
+    }
+
+    public UserAccount getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(UserAccount customer) {
+        this.customer = customer;
+    }
+
+    public Employee getEmployee() {
+        return employee;
+    }
+
+    public void setEmployee(Employee employee) {
+        this.employee = employee;
+    }
+
+    public Product getProduct() {
+        return product;
+    }
+
+    public void setProduct(Product product) {
+        this.product = product;
+    }
+
+    public LocalDate getFrom() {
+        return from;
+    }
+
+    public void setFrom(LocalDate from) {
+        this.from = from;
+    }
+
+    public LocalDate getTo() {
+        return to;
+    }
+
+    public void setTo(LocalDate to) {
+        this.to = to;
+    }
+}
@@ -1,8 +1,6 @@
 package com.rmit.sept.mon15307.backend.payload;
 
 import com.fasterxml.jackson.annotation.JsonSetter;
-import com.rmit.sept.mon15307.backend.exceptions.InvalidTimeSlotException;
-import com.rmit.sept.mon15307.backend.model.Booking;
 
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
@@ -70,9 +68,7 @@ public class BookingRequest {
 
     @JsonSetter("appointment_time")
     public void setTime_slot(String time_slot) {
-        if (!Booking.permittedTimes.contains(time_slot)) {
-            throw new InvalidTimeSlotException("Time slot not supported");
-        }
+        // checked against the business hours of the requested date when booking
         this.time_slot = time_slot;
     }
 }
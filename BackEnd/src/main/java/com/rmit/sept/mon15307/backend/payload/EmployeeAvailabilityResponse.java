@@ -1,56 +1,52 @@
 package com.rmit.sept.mon15307.backend.payload;
 
 import com.fasterxml.jackson.annotation.JsonGetter;
+import com.rmit.sept.mon15307.backend.business.DaySlots;
 import com.rmit.sept.mon15307.backend.exceptions.ScheduleFullyBookedException;
 import com.rmit.sept.mon15307.backend.model.Employee;
-import com.rmit.sept.mon15307.backend.model.Schedule;
-import com.rmit.sept.mon15307.backend.services.BookingService;
-import com.rmit.sept.mon15307.backend.services.ScheduleService;
+import com.rmit.sept.mon15307.backend.services.AvailabilityService;
+import com.rmit.sept.mon15307.backend.services.AvailabilityService.ScheduledDay;
 
-import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
 
+// Computed up front, so a response can be cached and served again as is
 public class EmployeeAvailabilityResponse {
-    private final Employee employee;
-    private final BookingService bookingService;
-    private final ScheduleService scheduleService;
+    private final String staffId;
+    private final List<EmployeeTimesResponse> days = new ArrayList<>();
 
     public EmployeeAvailabilityResponse(
-        Employee employee, BookingService bookingService, ScheduleService scheduleService
+        Employee employee, AvailabilityService availabilityService
     ) {
-        this.employee = employee;
-        this.bookingService = bookingService;
-        this.scheduleService = scheduleService;
+        this(employee, availabilityService, 0);
     }
 
-    @JsonGetter("staff_id")
-    public String getId() {
-        if (this.employee.getId() != null) {
-            return this.employee.getId();
-        } else {
-            return null;
-        }
-    }
-
-    @JsonGetter("days")
-    public List<EmployeeTimesResponse> getTimes() {
-        List<EmployeeTimesResponse> times = new ArrayList<>();
-
-        LocalDate startDate = LocalDate.now().minusDays(1);
-        LocalDate endDate = LocalDate.now().plusDays(13);
-
-        Iterable<Schedule> employeeSchedules =
-            scheduleService.findByEmployeeAndDateRange(employee, startDate, endDate);
+    // Lists only the times at which a booking of the given length fits
+    public EmployeeAvailabilityResponse(
+        Employee employee, AvailabilityService availabilityService, int durationMinutes
+    ) {
+        this.staffId = employee.getId();
 
-        for (Schedule schedule : employeeSchedules) {
+        for (ScheduledDay day : availabilityService.getScheduledDays(employee)) {
             try {
-                times.add(new EmployeeTimesResponse(schedule, bookingService));
+                // exclude times where the booking would run into another one
+                DaySlots slots = day.getOccupancy().getSlots();
+                long free = day.getOccupancy().freeStarts(slots.slotsFor(durationMinutes)) &
+                            EmployeeTimesResponse.bookableSlots(day.getDate(), slots);
+                this.days.add(new EmployeeTimesResponse(day.getDate(), slots, free));
             } catch (ScheduleFullyBookedException e) {
                 // skip this day
             }
         }
+    }
 
-        return times;
+    @JsonGetter("staff_id")
+    public String getId() {
+        return this.staffId;
+    }
+
+    @JsonGetter("days")
+    public List<EmployeeTimesResponse> getTimes() {
+        return this.days;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,40 @@
+package com.rmit.sept.mon15307.backend.persistence;
+
+import org.springframework.data.jpa.repository.support.SimpleJpaRepository;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+// Connections for service methods marked @Transactional(readOnly = true) come from
+// the replica, all others (writes, and anything outside a transaction) from the
+// primary
+public class ReadOnlyRoutingDataSource extends AbstractRoutingDataSource {
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    // Spring Data runs repository reads in read only transactions of their own,
+    // named after this class; reads that need to be current (the availability read
+    // model, idempotency keys) rely on staying on the primary
+    private static final String REPOSITORY_TRANSACTION = SimpleJpaRepository.class.getName() + ".";
+
+    public ReadOnlyRoutingDataSource(DataSource primary, DataSource replica) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        targets.put(REPLICA, replica);
+        this.setTargetDataSources(targets);
+        this.setDefaultTargetDataSource(primary);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return PRIMARY;
+        }
+
+        String transaction = TransactionSynchronizationManager.getCurrentTransactionName();
+        return transaction == null || transaction.startsWith(REPOSITORY_TRANSACTION) ? PRIMARY : REPLICA;
+    }
+}
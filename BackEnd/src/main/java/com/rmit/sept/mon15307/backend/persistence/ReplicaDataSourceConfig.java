@@ -0,0 +1,42 @@
+package com.rmit.sept.mon15307.backend.persistence;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+// Only with booking.datasource.replica.url set; otherwise Spring Boot's single
+// spring.datasource is used for everything
+@Configuration
+@ConditionalOnProperty(prefix = "booking.datasource.replica", name = "url")
+@EnableConfigurationProperties(ReplicaDataSourceProperties.class)
+public class ReplicaDataSourceConfig {
+    @Bean
+    public DataSource dataSource(
+        DataSourceProperties primaryProperties, ReplicaDataSourceProperties replicaProperties
+    ) {
+        DataSource primary = primaryProperties.initializeDataSourceBuilder().build();
+        DataSource replica = DataSourceBuilder
+            .create()
+            .url(replicaProperties.getUrl())
+            .username(replicaProperties.getUsername() != null
+                      ? replicaProperties.getUsername()
+                      : primaryProperties.determineUsername())
+            .password(replicaProperties.getPassword() != null
+                      ? replicaProperties.getPassword()
+                      : primaryProperties.determinePassword())
+            .build();
+
+        ReadOnlyRoutingDataSource routing = new ReadOnlyRoutingDataSource(primary, replica);
+        routing.afterPropertiesSet();
+
+        // the transaction manager asks for a connection before it marks the
+        // transaction read only, so only pick one when the first statement runs
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
@@ -0,0 +1,38 @@
+package com.rmit.sept.mon15307.backend.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+// booking.datasource.replica.* settings, see application.properties
+@ConfigurationProperties(prefix = "booking.datasource.replica")
+public class ReplicaDataSourceProperties {
+    private String url;
+
+    // the primary's (spring.datasource.*) when not set
+    private String username;
+
+    private String password;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+}
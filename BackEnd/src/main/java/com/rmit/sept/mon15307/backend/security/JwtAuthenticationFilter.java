@@ -2,7 +2,9 @@ package com.rmit.sept.mon15307.backend.security;
 
 import com.rmit.sept.mon15307.backend.model.UserAccount;
 import com.rmit.sept.mon15307.backend.services.CustomUserDetailsService;
+import io.jsonwebtoken.Claims;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -27,6 +29,11 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private CustomUserDetailsService customUserDetailsService;
 
+    // build principals from token claims instead of loading the user; either way the
+    // token's version must still be the user's current one
+    @Value("${booking.claims-principal.enabled:false}")
+    private boolean claimsPrincipal;
+
     @Override
     protected void doFilterInternal(HttpServletRequest httpServletRequest, HttpServletResponse httpServletResponse,
                                     FilterChain filterChain) throws ServletException, IOException {
@@ -35,10 +42,22 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
             String jwt = getJWTFromRequest(httpServletRequest);
 
-            if(StringUtils.hasText(jwt)&& tokenProvider.validateToken(jwt)){
-                Long userId = tokenProvider.getUserIdFromJWT(jwt);
-                UserAccount userDetails = customUserDetailsService.loadUserById(userId);
-
+            // verified once, with the claims kept for the user id
+            Claims claims = StringUtils.hasText(jwt) ? tokenProvider.verify(jwt) : null;
+            UserAccount userDetails = null;
+            if(claims != null){
+                Long userId = tokenProvider.getUserId(claims);
+                if (claimsPrincipal) {
+                    Long version = customUserDetailsService.loadTokenVersion(userId);
+                    userDetails = version != null && version == tokenProvider.getTokenVersion(claims)
+                        ? tokenProvider.getUser(claims) : null;
+                } else {
+                    UserAccount user = customUserDetailsService.loadUserById(userId);
+                    userDetails = user != null && user.getTokenVersion() == tokenProvider.getTokenVersion(claims)
+                        ? user : null;
+                }
+            }
+            if(userDetails != null){
                 UsernamePasswordAuthenticationToken authentication = new UsernamePasswordAuthenticationToken(
                         userDetails, null, Collections.emptyList());
 
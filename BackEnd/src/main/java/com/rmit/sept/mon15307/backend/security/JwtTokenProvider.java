@@ -2,10 +2,19 @@ package com.rmit.sept.mon15307.backend.security;
 
 import com.rmit.sept.mon15307.backend.model.UserAccount;
 
+import com.rmit.sept.mon15307.backend.cache.ExpiringCache;
 import io.jsonwebtoken.*;
+import io.jsonwebtoken.impl.TextCodec;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -15,6 +24,21 @@ import static com.rmit.sept.mon15307.backend.security.SecurityConstant.SECRET;
 
 @Component
 public class JwtTokenProvider {
+    // SECRET is base64, as jjwt reads a string key; decoded once instead of per parse
+    private static final Key SIGNING_KEY =
+        new SecretKeySpec(TextCodec.BASE64.decode(SECRET), SignatureAlgorithm.HS512.getJcaName());
+
+    // claims of recently verified tokens, keyed by the token's SHA-256 digest
+    private final ExpiringCache<String, Claims> verifiedTokens;
+
+    public JwtTokenProvider(
+        @Value("${booking.token-cache.max-entries:10000}")
+            int maxEntries,
+        @Value("${booking.token-cache.ttl-seconds:300}")
+            long ttlSeconds
+    ) {
+        this.verifiedTokens = new ExpiringCache<>(maxEntries, ttlSeconds * 1000);
+    }
 
     //Generate the token
 
@@ -35,21 +59,34 @@ public class JwtTokenProvider {
         claims.put("isWorker",user.getWorker());
         claims.put("preferredName",user.getPreferredName());
         claims.put("isAdmin",user.getAdmin());
+        claims.put("ver",user.getTokenVersion());
 
         return Jwts.builder()
                 .setSubject(userId)
                 .setClaims(claims)
                 .setIssuedAt(now)
                 .setExpiration(expiryDate)
-                .signWith(SignatureAlgorithm.HS512, SECRET)
+                .signWith(SignatureAlgorithm.HS512, SIGNING_KEY)
                 .compact();
     }
 
-    //Validate the token
-    public boolean validateToken(String token){
+    //Verify the token, returning its claims or null if it isn't valid
+    public Claims verify(String token){
+        String digest = digestOf(token);
+        Claims claims = verifiedTokens.get(digest);
+        if (claims != null) {
+            // a cached token can expire before its entry does
+            if (claims.getExpiration().getTime() <= System.currentTimeMillis()) {
+                verifiedTokens.remove(digest);
+                return null;
+            }
+            return claims;
+        }
+
         try{
-            Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token);
-            return true;
+            claims = Jwts.parser().setSigningKey(SIGNING_KEY).parseClaimsJws(token).getBody();
+            verifiedTokens.put(digest, claims);
+            return claims;
         }catch (SignatureException ex){
             System.out.println("Invalid JWT Signature");
         }catch (MalformedJwtException ex){
@@ -61,17 +98,47 @@ public class JwtTokenProvider {
         }catch (IllegalArgumentException ex){
             System.out.println("JWT claims string is empty");
         }
-        return false;
+        return null;
     }
 
 
-    //Get user Id from token
+    //Get user Id from verified claims
 
-    public Long getUserIdFromJWT(String token){
-        Claims claims = Jwts.parser().setSigningKey(SECRET).parseClaimsJws(token).getBody();
+    public Long getUserId(Claims claims){
         String id = (String)claims.get("id");
 
         return Long.parseLong(id);
     }
-}
 
+    // tokens from before versioning have none, which matches a user never revoked
+    public long getTokenVersion(Claims claims){
+        Number version = claims.get("ver", Number.class);
+
+        return version == null ? 0 : version.longValue();
+    }
+
+    //Build the user from verified claims, without its password or timestamps
+
+    public UserAccount getUser(Claims claims){
+        UserAccount user = new UserAccount();
+        user.setUserId(getUserId(claims));
+        user.setUsername(claims.get("username", String.class));
+        user.setFullName(claims.get("fullName", String.class));
+        user.setPhoneNumber(claims.get("phoneNumber", String.class));
+        user.setPreferredName(claims.get("preferredName", String.class));
+        user.setCustomer(claims.get("isCustomer", Boolean.class));
+        user.setWorker(claims.get("isWorker", Boolean.class));
+        user.setAdmin(claims.get("isAdmin", Boolean.class));
+
+        return user;
+    }
+
+    private static String digestOf(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return Base64.getEncoder().encodeToString(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.rmit.sept.mon15307.backend.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
+import com.rmit.sept.mon15307.backend.events.AvailabilityChangedEvent;
+import com.rmit.sept.mon15307.backend.events.ScheduleChangedEvent;
+import com.rmit.sept.mon15307.backend.payload.AvailabilityDelta;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Fans availability changes out to the open /api/staff/{id}/times/stream connections.
+// Each change is serialized once and the same text is queued for every subscriber of
+// that employee, off the thread that committed the booking. Every subscriber's queue
+// is written out by one sender at a time, so a client that stops reading only holds
+// up its own stream; once it falls maxPending changes behind, its stream is closed
+// and, like any client that reconnects, it refetches /times.
+@Service
+public class AvailabilityBroadcaster {
+    @Autowired
+    private BusinessHours businessHours;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    private final ExecutorService sender = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "availability-broadcaster");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long timeoutMillis;
+
+    private final int maxPending;
+
+    public AvailabilityBroadcaster(
+        @Value("${booking.availability-stream.timeout-minutes:30}")
+            long timeoutMinutes,
+        @Value("${booking.availability-stream.max-pending:64}")
+            int maxPending
+    ) {
+        this.timeoutMillis = timeoutMinutes * 60 * 1000;
+        this.maxPending = maxPending;
+    }
+
+    // Clients reconnect once the stream times out, and should refetch /times then
+    // as changes made in between aren't replayed
+    public SseEmitter subscribe(String employeeId) {
+        SseEmitter emitter = this.createEmitter(this.timeoutMillis);
+        Set<Subscriber> employeeSubscribers =
+            this.subscribers.computeIfAbsent(employeeId, id -> new CopyOnWriteArraySet<>());
+        Subscriber subscriber = new Subscriber(emitter, employeeSubscribers);
+        employeeSubscribers.add(subscriber);
+
+        Runnable unsubscribe = () -> employeeSubscribers.remove(subscriber);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+
+        return emitter;
+    }
+
+    protected SseEmitter createEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        AvailabilityDelta delta = new AvailabilityDelta(event.getEmployeeId(),
+                                                        event.getDate(),
+                                                        businessHours
+                                                            .forDate(event.getDate())
+                                                            .timesOf(event.getSlots())
+        );
+
+        String data;
+        try {
+            data = this.objectMapper.writeValueAsString(delta);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+
+        this.broadcast(event.getEmployeeId(), event.isTaken() ? "taken" : "freed", data);
+    }
+
+    // A schedule change can add or remove whole days, so clients refetch instead
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        this.broadcast(event.getEmployeeId(), "reload", "{}");
+    }
+
+    private void broadcast(String employeeId, String eventName, String data) {
+        for (Subscriber subscriber : this.subscribers.getOrDefault(employeeId,
+                                                                    Collections.emptySet())) {
+            subscriber.offer(SseEmitter.event().name(eventName).data(data));
+        }
+    }
+
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final Set<Subscriber> employeeSubscribers;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> pending;
+
+        // set while a sender is writing out the queue
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter, Set<Subscriber> employeeSubscribers) {
+            this.emitter = emitter;
+            this.employeeSubscribers = employeeSubscribers;
+            this.pending = new ArrayBlockingQueue<>(maxPending);
+        }
+
+        void offer(SseEmitter.SseEventBuilder event) {
+            if (!this.pending.offer(event)) {
+                // fallen behind
+                this.drop(null);
+                return;
+            }
+
+            if (this.sending.compareAndSet(false, true)) {
+                sender.execute(this::send);
+            }
+        }
+
+        private void send() {
+            do {
+                SseEmitter.SseEventBuilder event;
+                while ((event = this.pending.poll()) != null) {
+                    try {
+                        this.emitter.send(event);
+                    } catch (IOException | IllegalStateException e) {
+                        // connection has gone away
+                        this.drop(e);
+                        return;
+                    }
+                }
+                this.sending.set(false);
+
+                // carry on with anything queued after the last poll, unless another
+                // sender has already taken it
+            } while (!this.pending.isEmpty() && this.sending.compareAndSet(false, true));
+        }
+
+        private void drop(Throwable error) {
+            if (!this.employeeSubscribers.remove(this)) {
+                return;
+            }
+
+            this.pending.clear();
+            if (error == null) {
+                this.emitter.complete();
+            } else {
+                this.emitter.completeWithError(error);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        this.sender.shutdownNow();
+    }
+}
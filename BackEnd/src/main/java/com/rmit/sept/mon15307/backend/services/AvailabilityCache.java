@@ -0,0 +1,115 @@
+package com.rmit.sept.mon15307.backend.services;
+
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
+import com.rmit.sept.mon15307.backend.business.DaySlots;
+import com.rmit.sept.mon15307.backend.cache.CacheStats;
+import com.rmit.sept.mon15307.backend.cache.ExpiringCache;
+import com.rmit.sept.mon15307.backend.payload.EmployeeAvailabilityResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+// Computed /api/staff/{id}/times responses, keyed by the employee's availability
+// version (see AvailabilityService.getVersion). A booking or schedule change on any
+// node moves the version on, so older entries are never hit again; the TTL only
+// bounds how long they're kept around.
+@Service
+public class AvailabilityCache {
+    @Autowired
+    private BusinessHours businessHours;
+
+    private final ExpiringCache<Key, EmployeeAvailabilityResponse> responses;
+
+    public AvailabilityCache(
+        @Value("${booking.availability-cache.max-entries:10000}")
+            int maxEntries,
+        @Value("${booking.availability-cache.ttl-seconds:300}")
+            long ttlSeconds
+    ) {
+        this.responses = new ExpiringCache<>(maxEntries, ttlSeconds * 1000);
+    }
+
+    // The version must have been read before computing, so a response is never kept
+    // under a newer version than the one it was computed from
+    public EmployeeAvailabilityResponse get(
+        String employeeId,
+        long availabilityVersion,
+        int durationMinutes,
+        Supplier<EmployeeAvailabilityResponse> compute
+    ) {
+        EmployeeAvailabilityResponse response =
+            this.responses.get(this.keyFor(employeeId, availabilityVersion, durationMinutes));
+        if (response != null) {
+            return response;
+        }
+
+        response = compute.get();
+        // stored under the id of the employee found, so "007" and "7" share an entry
+        this.responses.put(this.keyFor(response.getId(), availabilityVersion, durationMinutes),
+                           response
+        );
+        return response;
+    }
+
+    public CacheStats stats() {
+        return this.responses.stats();
+    }
+
+    // Responses also depend on the day and, for today, on which slots have already
+    // started, so a new key is used once either moves on
+    private Key keyFor(String employeeId, long availabilityVersion, int durationMinutes) {
+        LocalDate today = LocalDate.now();
+        DaySlots slots = businessHours.forDate(today);
+        long startedSlots = slots.slotsStartedBy(DaySlots.minuteOf(LocalTime.now()));
+
+        return new Key(employeeId, availabilityVersion, durationMinutes, today, startedSlots);
+    }
+
+    private static class Key {
+        private final String employeeId;
+        private final long availabilityVersion;
+        private final int durationMinutes;
+        private final LocalDate date;
+        private final long startedSlots;
+
+        Key(
+            String employeeId,
+            long availabilityVersion,
+            int durationMinutes,
+            LocalDate date,
+            long startedSlots
+        ) {
+            this.employeeId = employeeId;
+            this.availabilityVersion = availabilityVersion;
+            this.durationMinutes = durationMinutes;
+            this.date = date;
+            this.startedSlots = startedSlots;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return availabilityVersion == key.availabilityVersion &&
+                   durationMinutes == key.durationMinutes &&
+                   startedSlots == key.startedSlots &&
+                   employeeId.equals(key.employeeId) &&
+                   date.equals(key.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(employeeId, availabilityVersion, durationMinutes, date, startedSlots);
+        }
+    }
+}
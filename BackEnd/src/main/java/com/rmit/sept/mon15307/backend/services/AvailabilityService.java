@@ -0,0 +1,279 @@
+package com.rmit.sept.mon15307.backend.services;
+
+import com.rmit.sept.mon15307.backend.business.SlotOccupancy;
+import com.rmit.sept.mon15307.backend.events.AvailabilityChangedEvent;
+import com.rmit.sept.mon15307.backend.events.ScheduleChangedEvent;
+import com.rmit.sept.mon15307.backend.model.Employee;
+import com.rmit.sept.mon15307.backend.model.Schedule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+// In-memory read model of each employee's scheduled days and booked slots over the
+// availability window. An employee's days are loaded from the database on first read
+// and kept in step with this node's own bookings and schedule edits as they commit,
+// day by day. Each change moves the employee's availability version (see Employee)
+// on by one, so a version that isn't the cached one plus the change's means another
+// node got in between, and the days are loaded again on next read. Checking the
+// version is a primary key lookup rather than a rebuild per request.
+@Service
+public class AvailabilityService {
+    // the window: yesterday, today and the 13 days after
+    private static final int DAYS_BEFORE = 1;
+    private static final int DAYS_AFTER = 13;
+
+    @Autowired
+    private ScheduleService scheduleService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    private final Map<String, EmployeeDays> employees = new ConcurrentHashMap<>();
+
+    public static LocalDate firstDay(LocalDate today) {
+        return today.minusDays(DAYS_BEFORE);
+    }
+
+    public static LocalDate lastDay(LocalDate today) {
+        return today.plusDays(DAYS_AFTER);
+    }
+
+    // Current version of the employee's availability, or null if the id isn't one
+    public Long getVersion(String employeeId) {
+        long id;
+        try {
+            id = Long.parseLong(employeeId);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        return employeeService.findAvailabilityVersion(id);
+    }
+
+    public List<ScheduledDay> getScheduledDays(Employee employee) {
+        return this.getScheduledDays(Collections.singletonList(employee)).get(employee.getId());
+    }
+
+    // Scheduled days keyed by employee id. Employees not yet in the read model are
+    // loaded together, so the cost doesn't grow with the number of employees.
+    public Map<String, List<ScheduledDay>> getScheduledDays(Collection<Employee> employees) {
+        LocalDate today = LocalDate.now();
+
+        Map<Long, Employee> byId = new HashMap<>();
+        for (Employee employee : employees) {
+            byId.put(Long.parseLong(employee.getId()), employee);
+        }
+        Map<Long, Long> versions = employeeService.findAvailabilityVersions(byId.keySet());
+
+        Map<String, List<ScheduledDay>> scheduledDays = new HashMap<>();
+        List<Employee> missing = new ArrayList<>();
+        for (Map.Entry<Long, Employee> employee : byId.entrySet()) {
+            EmployeeDays cached = this.employees.get(employee.getValue().getId());
+            if (cached != null &&
+                cached.builtFor.isEqual(today) &&
+                cached.version == versions.getOrDefault(employee.getKey(), 0L)) {
+                scheduledDays.put(employee.getValue().getId(), cached.days);
+            } else {
+                missing.add(employee.getValue());
+            }
+        }
+
+        if (missing.isEmpty()) {
+            return scheduledDays;
+        }
+
+        // The versions were read before the days are, so a change racing the load
+        // leaves a newer version than the one stored and is picked up next read. A
+        // copy brought further along by this node's changes meanwhile is kept.
+        for (Map.Entry<String, EmployeeDays> loaded : this.load(missing, today, versions).entrySet()) {
+            this.employees.merge(loaded.getKey(),
+                                 loaded.getValue(),
+                                 (current, fresh) -> current.builtFor.isEqual(fresh.builtFor) &&
+                                                     current.version > fresh.version
+                                                     ? current : fresh
+            );
+            scheduledDays.put(loaded.getKey(), loaded.getValue().days);
+        }
+
+        return scheduledDays;
+    }
+
+    // A booking takes its slots on the cached day; freed slots are read back for the
+    // day, as a slot may still be partly covered by another booking
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAvailabilityChanged(AvailabilityChangedEvent event) {
+        this.apply(event.getEmployeeId(), event.getVersion(), days -> {
+            List<ScheduledDay> changed = new ArrayList<>(days);
+            for (int i = 0; i < changed.size(); i++) {
+                ScheduledDay day = changed.get(i);
+                if (!day.getScheduleId().equals(event.getScheduleId())) {
+                    continue;
+                }
+
+                SlotOccupancy occupancy = event.isTaken()
+                                          ? day.getOccupancy().withSlots(event.getSlots())
+                                          : this.readOccupancy(event.getScheduleId());
+                if (occupancy == null) {
+                    return null;
+                }
+                changed.set(i, new ScheduledDay(day.getScheduleId(), day.getDate(), occupancy));
+            }
+            return changed;
+        });
+    }
+
+    // Only the edited day is read back
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        this.apply(event.getEmployeeId(), event.getVersion(), days -> {
+            Schedule schedule = scheduleService.findById(event.getScheduleId());
+            if (schedule == null) {
+                return null;
+            }
+
+            List<ScheduledDay> changed = new ArrayList<>();
+            for (ScheduledDay day : days) {
+                if (!day.getScheduleId().equals(schedule.getId())) {
+                    changed.add(day);
+                }
+            }
+
+            LocalDate today = LocalDate.now();
+            if (!schedule.getDate().isBefore(firstDay(today)) &&
+                !schedule.getDate().isAfter(lastDay(today))) {
+                SlotOccupancy occupancy = this.readOccupancy(schedule.getId());
+                if (occupancy == null) {
+                    return null;
+                }
+                changed.add(new ScheduledDay(schedule.getId(), schedule.getDate(), occupancy));
+                changed.sort(Comparator.comparing(ScheduledDay::getDate));
+            }
+            return changed;
+        });
+    }
+
+    // Applies a change that moved the employee's version to the given one, if the
+    // cached days are the ones just before it. Otherwise they either have it already
+    // or missed a change from another node, and are left for the next read. A change
+    // that returns null drops the employee's days.
+    private void apply(String employeeId, long version, UnaryOperator<List<ScheduledDay>> change) {
+        EmployeeDays cached = this.employees.get(employeeId);
+        if (cached == null ||
+            !cached.builtFor.isEqual(LocalDate.now()) ||
+            cached.version != version - 1) {
+            return;
+        }
+
+        List<ScheduledDay> days = change.apply(cached.days);
+        if (days == null) {
+            this.employees.remove(employeeId, cached);
+            return;
+        }
+
+        // lost to a concurrent load or change, which the next read sorts out
+        this.employees.replace(employeeId,
+                               cached,
+                               new EmployeeDays(cached.builtFor,
+                                                version,
+                                                Collections.unmodifiableList(days)
+                               )
+        );
+    }
+
+    private SlotOccupancy readOccupancy(Long scheduleId) {
+        Schedule schedule = scheduleService.findById(scheduleId);
+        if (schedule == null) {
+            return null;
+        }
+        return bookingService.getOccupancies(Collections.singletonList(schedule)).get(scheduleId);
+    }
+
+    private Map<String, EmployeeDays> load(
+        Collection<Employee> employees, LocalDate today, Map<Long, Long> versions
+    ) {
+        LocalDate startDate = firstDay(today);
+        LocalDate endDate = lastDay(today);
+
+        // one query for the schedules and one for all of their bookings
+        List<Schedule> schedules = new ArrayList<>();
+        scheduleService
+            .findByEmployeesAndDateRange(employees, startDate, endDate)
+            .forEach(schedules::add);
+
+        Map<Long, SlotOccupancy> occupancies =
+            bookingService.getOccupancies(schedules, employees, startDate, endDate);
+
+        Map<String, List<ScheduledDay>> daysByEmployee = new HashMap<>();
+        for (Employee employee : employees) {
+            daysByEmployee.put(employee.getId(), new ArrayList<>());
+        }
+
+        for (Schedule schedule : schedules) {
+            daysByEmployee
+                .get(schedule.getEmployee().getId())
+                .add(new ScheduledDay(schedule.getId(),
+                                      schedule.getDate(),
+                                      occupancies.get(schedule.getId())
+                ));
+        }
+
+        Map<String, EmployeeDays> loaded = new HashMap<>();
+        for (Map.Entry<String, List<ScheduledDay>> entry : daysByEmployee.entrySet()) {
+            List<ScheduledDay> days = entry.getValue();
+            days.sort(Comparator.comparing(ScheduledDay::getDate));
+            loaded.put(entry.getKey(),
+                       new EmployeeDays(today,
+                                        versions.getOrDefault(Long.parseLong(entry.getKey()), 0L),
+                                        Collections.unmodifiableList(days)
+                       )
+            );
+        }
+
+        return loaded;
+    }
+
+    public static class ScheduledDay {
+        private final Long scheduleId;
+        private final LocalDate date;
+        private final SlotOccupancy occupancy;
+
+        ScheduledDay(Long scheduleId, LocalDate date, SlotOccupancy occupancy) {
+            this.scheduleId = scheduleId;
+            this.date = date;
+            this.occupancy = occupancy;
+        }
+
+        public Long getScheduleId() {
+            return scheduleId;
+        }
+
+        public LocalDate getDate() {
+            return date;
+        }
+
+        public SlotOccupancy getOccupancy() {
+            return occupancy;
+        }
+    }
+
+    // Immutable, a change swaps in an updated copy
+    private static class EmployeeDays {
+        private final LocalDate builtFor;
+        private final long version;
+        private final List<ScheduledDay> days;
+
+        EmployeeDays(LocalDate builtFor, long version, List<ScheduledDay> days) {
+            this.builtFor = builtFor;
+            this.version = version;
+            this.days = days;
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.rmit.sept.mon15307.backend.services;
+
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository;
+import com.rmit.sept.mon15307.backend.model.Booking;
+import com.rmit.sept.mon15307.backend.payload.BookingFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+// Hands bookings to a writer one at a time straight off the database cursor, so
+// exporting every booking takes no more memory than exporting a handful
+@Service
+public class BookingExportService {
+    @Autowired
+    private BookingsRepository bookingsRepository;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional(readOnly = true)
+    public void exportBookings(BookingFilter filter, BookingWriter writer) throws IOException {
+        try (Stream<Booking> stream = bookingsRepository.streamBookings(filter)) {
+            Iterator<Booking> iterator = stream.iterator();
+            int count = 0;
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+
+                // written bookings would otherwise pile up in the persistence context
+                if (++count % BookingsRepository.STREAM_FETCH_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+        }
+    }
+
+    public interface BookingWriter {
+        void write(Booking booking) throws IOException;
+    }
+}
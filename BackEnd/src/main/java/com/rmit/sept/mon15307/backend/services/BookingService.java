@@ -1,18 +1,29 @@
 package com.rmit.sept.mon15307.backend.services;
 
+import com.rmit.sept.mon15307.backend.Repositories.BookingSlotRepository;
 import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository;
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository.BookedSlot;
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository.BookingListing;
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
+import com.rmit.sept.mon15307.backend.business.DaySlots;
+import com.rmit.sept.mon15307.backend.business.SlotOccupancy;
+import com.rmit.sept.mon15307.backend.events.AvailabilityChangedEvent;
 import com.rmit.sept.mon15307.backend.exceptions.*;
 import com.rmit.sept.mon15307.backend.model.*;
 import com.rmit.sept.mon15307.backend.model.enumeration.BookingStatus;
+import com.rmit.sept.mon15307.backend.payload.BookingFilter;
 import com.rmit.sept.mon15307.backend.payload.BookingPatch;
 import com.rmit.sept.mon15307.backend.payload.BookingRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.Collection;
+import java.util.*;
 
 @Service
 public class BookingService {
@@ -25,18 +36,19 @@ public class BookingService {
     @Autowired
     private ScheduleService scheduleService;
 
+    @Autowired
+    private BookingSlotRepository bookingSlotRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private BusinessHours businessHours;
+
     public Booking saveOrUpdateBooking(Booking booking) {
         return bookingsRepository.save(booking);
     }
 
-    public Iterable<Booking> findBookingsBySchedule(Schedule schedule, boolean includeCancelled) {
-        return includeCancelled
-               ? this.bookingsRepository.findBookingsBySchedule(schedule)
-               : this.bookingsRepository.findBookingsByScheduleAndStatusNot(schedule,
-                                                                            BookingStatus.CANCELLED
-               );
-    }
-
     public Booking findByBookingId(Long bookingId) throws BookingNotFoundException {
         Booking booking = bookingsRepository.findByBookingId(bookingId);
 
@@ -47,100 +59,299 @@ public class BookingService {
         return booking;
     }
 
-    public boolean conflictsWithExisting(
-        Schedule schedule, Employee employee, LocalDateTime startTime, LocalDateTime endTime
-    ) {
-        Iterable<Booking> employeeBookingsForDay =
-            this.bookingsRepository.findByScheduleAndEmployee(schedule, employee);
-
-        // max 16 bookings for a single employee in a day
-        for (Booking booking : employeeBookingsForDay) {
-            boolean startsDuring = booking.getStartTime().isAfter(startTime) &&
-                                   booking.getStartTime().isBefore(endTime);
-            boolean endsDuring =
-                booking.getEndTime().isAfter(startTime) && booking.getEndTime().isBefore(endTime);
-
-            if (startsDuring || endsDuring) {
-                return true;
-            }
+    // Occupancy of several schedules at once, keyed by schedule id
+    public Map<Long, SlotOccupancy> getOccupancies(Collection<Schedule> schedules) {
+        if (schedules.isEmpty()) {
+            return new HashMap<>();
         }
 
-        // no conflicts found
-        return false;
+        // cancelled bookings free up their slots
+        Iterable<BookedSlot> bookedSlots =
+            this.bookingsRepository.findBookedSlotsByScheduleInAndStatusNot(schedules,
+                                                                            BookingStatus.CANCELLED
+            );
+
+        return this.toOccupancies(schedules, bookedSlots);
     }
 
-    public Iterable<Booking> findUserBookingsByStatuses(
-        UserAccount user, Collection<BookingStatus> statuses
+    // Occupancy of the given schedules, which must be all of the employees' schedules
+    // within [startDate, endDate]
+    public Map<Long, SlotOccupancy> getOccupancies(
+        Collection<Schedule> schedules,
+        Collection<Employee> employees,
+        LocalDate startDate,
+        LocalDate endDate
     ) {
-        return bookingsRepository.findByCustomerAndStatusIn(user, statuses);
+        if (schedules.isEmpty()) {
+            return new HashMap<>();
+        }
+
+        Iterable<BookedSlot> bookedSlots =
+            this.bookingsRepository.findBookedSlotsByEmployeeInAndDateBetweenAndStatusNot(
+                employees,
+                startDate,
+                endDate,
+                BookingStatus.CANCELLED
+            );
+
+        return this.toOccupancies(schedules, bookedSlots);
     }
 
-    public Iterable<Booking> findWorkerBookingsByStatuses(
-        UserAccount user, Collection<BookingStatus> statuses
+    private Map<Long, SlotOccupancy> toOccupancies(
+        Collection<Schedule> schedules, Iterable<BookedSlot> bookedSlots
     ) {
-        Employee employee = employeeService.findByByUser(user);
-        return bookingsRepository.findBookingsByEmployeeAndStatusIsIn(employee, statuses);
+        Map<Long, SlotOccupancy> occupancies = new HashMap<>();
+        for (Schedule schedule : schedules) {
+            occupancies.put(schedule.getId(), businessHours.forDate(schedule.getDate()).empty());
+        }
+
+        for (BookedSlot slot : bookedSlots) {
+            SlotOccupancy occupancy = occupancies.get(slot.getScheduleId());
+            if (occupancy == null) {
+                continue;
+            }
+
+            long covered = occupancy
+                .getSlots()
+                .covering(slot.getStartMinute(), slot.getEndMinute() - slot.getStartMinute());
+            occupancies.put(slot.getScheduleId(), occupancy.withSlots(covered));
+        }
+
+        return occupancies;
+    }
+
+    @Transactional(readOnly = true)
+    public List<BookingListing> findBookings(BookingFilter filter) {
+        return bookingsRepository.findListings(filter, null, null);
     }
 
-    public Iterable<Booking> findAllBookingsByStatuses(Collection<BookingStatus> statuses) {
-        return bookingsRepository.findBookingsByStatusIsIn(statuses);
+    // A page of at most limit bookings in id order, starting after the given id
+    @Transactional(readOnly = true)
+    public List<BookingListing> findBookings(BookingFilter filter, long afterId, int limit) {
+        return bookingsRepository.findListings(filter, afterId, limit);
     }
 
+    @Transactional
     public Booking setBookingStatus(Booking booking, BookingStatus status) {
         booking.setStatus(status);
+
+        // cancelled bookings give their slots back
+        if (status == BookingStatus.CANCELLED) {
+            this.bookingSlotRepository.deleteByBooking(booking);
+            long version = this.employeeService.bumpAvailabilityVersion(
+                Long.parseLong(booking.getEmployee().getId()), 1);
+            this.publishAvailabilityChange(booking, false, version);
+        }
+
         return bookingsRepository.save(booking);
     }
 
+    @Transactional
     public Booking createBooking(
         UserAccount customer, Employee employee, Product product, BookingRequest bookingRequest
     ) {
         // employee must be scheduled for the selected date
         Schedule schedule =
             scheduleService.findByEmployeeAndDate(employee, bookingRequest.getDate());
+        int startSlot = this.startSlotOf(bookingRequest, product);
+
+        if (!this.isBookable(schedule, bookingRequest, startSlot)) {
+            throw new ConflictException("Appointment time not available");
+        }
+
+        Booking booking = this.newBooking(customer, employee, product, schedule, bookingRequest);
+
+        // employee must not have any preexisting overlapping bookings, which the
+        // database enforces through the slots claimed on insert
+        this.insertBookings(Collections.singletonList(booking));
+
+        return booking;
+    }
+
+    // All or nothing: if any request can't be booked, none of them are
+    @Transactional
+    public List<Booking> createBookings(
+        List<BookingRequest> bookingRequests,
+        Map<Long, UserAccount> customers,
+        Map<Long, Employee> employees,
+        Map<Long, Product> products
+    ) {
+        Set<LocalDate> dates = new HashSet<>();
+        for (BookingRequest bookingRequest : bookingRequests) {
+            dates.add(bookingRequest.getDate());
+        }
+
+        // one query for every schedule involved and one for all of their bookings
+        List<Schedule> batchSchedules = new ArrayList<>();
+        Map<String, Map<LocalDate, Schedule>> schedules = new HashMap<>();
+        for (Schedule schedule : scheduleService.findByEmployeesAndDates(employees.values(),
+                                                                          dates
+        )) {
+            batchSchedules.add(schedule);
+            schedules
+                .computeIfAbsent(schedule.getEmployee().getId(), id -> new HashMap<>())
+                .put(schedule.getDate(), schedule);
+        }
+        Map<Long, SlotOccupancy> occupancies = this.getOccupancies(batchSchedules);
+
+        List<Booking> bookings = new ArrayList<>(bookingRequests.size());
+        for (int i = 0; i < bookingRequests.size(); i++) {
+            BookingRequest bookingRequest = bookingRequests.get(i);
+            Employee employee = employees.get(Long.parseLong(bookingRequest.getEmployeeId()));
+            Product product = products.get(Long.parseLong(bookingRequest.getProductId()));
+            Schedule schedule = schedules
+                .getOrDefault(employee.getId(), Collections.emptyMap())
+                .get(bookingRequest.getDate());
+            int startSlot = this.startSlotOf(bookingRequest, product);
+
+            if (!this.isBookable(schedule, bookingRequest, startSlot)) {
+                throw new ConflictException("Appointment time not available for booking " + i);
+            }
+
+            // occupancy includes earlier requests of this batch, so they can't overlap
+            // each other either
+            SlotOccupancy occupancy = occupancies.get(schedule.getId());
+            int slotCount = occupancy.getSlots().slotsFor(product.getDuration());
+
+            if (!occupancy.isFree(startSlot, slotCount)) {
+                throw new ConflictException("Appointment time not available for booking " + i);
+            }
+            occupancies.put(schedule.getId(), occupancy.withBooking(startSlot, slotCount));
+
+            UserAccount customer = customers.get(Long.parseLong(bookingRequest.getCustomerId()));
+            bookings.add(this.newBooking(customer, employee, product, schedule, bookingRequest));
+        }
+
+        // a booking made since the occupancy was read is still caught by the database
+        this.insertBookings(bookings);
+
+        return bookings;
+    }
+
+    // Time must be one of the slots the business is open for on that day, and the
+    // product must be over by closing time
+    private int startSlotOf(BookingRequest bookingRequest, Product product) {
+        DaySlots slots = businessHours.forDate(bookingRequest.getDate());
+        int startSlot = slots.slotOf(bookingRequest.getTimeSlot());
+
+        if (startSlot < 0) {
+            throw new InvalidTimeSlotException("Time slot not supported");
+        }
+        if (!slots.fits(startSlot, slots.slotsFor(product.getDuration()))) {
+            throw new InvalidTimeSlotException("Appointment must end by closing time");
+        }
+
+        return startSlot;
+    }
+
+    private boolean isBookable(Schedule schedule, BookingRequest bookingRequest, int startSlot) {
+        // employee must be scheduled for the selected date
         boolean employeeNotScheduled = schedule == null;
 
         // date must be in next 14 days (including today)
         LocalDate future = LocalDate.now().plusDays(14);
         boolean invalidDate = !bookingRequest.getDate().isBefore(future);
 
-        // time must be one of the permitted options
-        boolean unsupportedTime = !Booking.permittedTimes.contains(bookingRequest.getTimeSlot());
-
         // booking must not have already started
+        int startMinute = businessHours.forDate(bookingRequest.getDate()).startMinuteOf(startSlot);
         LocalDateTime startTime = LocalDateTime.of(bookingRequest.getDate(),
-                                                   LocalTime.parse(bookingRequest.getTimeSlot())
+                                                   LocalTime.of(startMinute / 60, startMinute % 60)
         );
         boolean invalidAppointmentStart = !startTime.isAfter(LocalDateTime.now());
 
-        // employee must not have any preexisting overlapping bookings
-        LocalDateTime endTime = startTime.plusMinutes(product.getDuration());
-        boolean bookingConflict =
-            this.conflictsWithExisting(schedule, employee, startTime, endTime);
-
-        if (employeeNotScheduled ||
-            invalidDate ||
-            unsupportedTime ||
-            invalidAppointmentStart ||
-            bookingConflict) {
-            throw new ConflictException("Appointment time not available");
-        }
-
-        // now we can make the booking (and hopefully no new conflict has arisen in the
-        // meantime)
-        // TODO: handle race conditions (create, check conflicts, maybe rollback and error)
+        return !(employeeNotScheduled || invalidDate || invalidAppointmentStart);
+    }
 
+    private Booking newBooking(
+        UserAccount customer,
+        Employee employee,
+        Product product,
+        Schedule schedule,
+        BookingRequest bookingRequest
+    ) {
         Booking booking = new Booking();
         booking.setStatus(BookingStatus.PENDING);
         booking.setCustomer(customer);
         booking.setEmployee(employee);
         booking.setProduct(product);
         booking.setSchedule(schedule);
-        booking.setTime(bookingRequest.getTimeSlot());
-        this.saveOrUpdateBooking(booking);
-
+        int startMinute = DaySlots.minuteOf(bookingRequest.getTimeSlot());
+        booking.setStartMinute(startMinute);
+        booking.setEndMinute(startMinute + product.getDuration());
         return booking;
     }
 
+    // Bookings and their slot claims go out as JDBC batches in a single flush
+    private void insertBookings(List<Booking> bookings) {
+        List<BookingSlot> claims = new ArrayList<>();
+        for (Booking booking : bookings) {
+            claims.addAll(this.claimSlots(booking));
+        }
+
+        try {
+            this.bookingsRepository.saveAll(bookings);
+            this.bookingSlotRepository.saveAll(claims);
+            this.bookingSlotRepository.flush();
+        } catch (DataIntegrityViolationException e) {
+            throw new ConflictException("Appointment time not available");
+        }
+
+        // last, as it holds the employee rows' locks until commit; in id order, so
+        // concurrent batches can't deadlock
+        Map<Long, List<Booking>> byEmployee = new TreeMap<>();
+        for (Booking booking : bookings) {
+            byEmployee
+                .computeIfAbsent(Long.parseLong(booking.getEmployee().getId()),
+                                 id -> new ArrayList<>())
+                .add(booking);
+        }
+
+        // one version per booking, so each event takes the version one step further
+        for (Map.Entry<Long, List<Booking>> employee : byEmployee.entrySet()) {
+            List<Booking> employeeBookings = employee.getValue();
+            long version = this.employeeService.bumpAvailabilityVersion(employee.getKey(),
+                                                                        employeeBookings.size()
+            );
+            long first = version - employeeBookings.size() + 1;
+            for (int i = 0; i < employeeBookings.size(); i++) {
+                this.publishAvailabilityChange(employeeBookings.get(i), true, first + i);
+            }
+        }
+    }
+
+    private void publishAvailabilityChange(Booking booking, boolean taken, long version) {
+        this.eventPublisher.publishEvent(new AvailabilityChangedEvent(
+            booking.getEmployee().getId(),
+            booking.getSchedule().getId(),
+            booking.getSchedule().getDate(),
+            this.coveredSlots(booking),
+            taken,
+            version
+        ));
+    }
+
+    private long coveredSlots(Booking booking) {
+        return businessHours
+            .forDate(booking.getSchedule().getDate())
+            .covering(booking.getStartMinute(), booking.getEndMinute() - booking.getStartMinute());
+    }
+
+    // Claims are made per fixed block rather than per slot, so existing claims still
+    // catch overlaps after the configured slot length changes
+    private List<BookingSlot> claimSlots(Booking booking) {
+        List<Integer> minutes =
+            DaySlots.claimMinutes(booking.getStartMinute(), booking.getEndMinute());
+
+        List<BookingSlot> claims = new ArrayList<>(minutes.size());
+        for (int minute : minutes) {
+            claims.add(new BookingSlot(booking, minute));
+        }
+        return claims;
+    }
+
+    // setBookingStatus is called on this, not through the proxy, so the cancellation's
+    // slot delete needs the transaction started here
+    @Transactional
     public Booking updateBooking(Booking booking, BookingPatch bookingPatch, UserAccount user) {
         // user must have authority to edit this booking
         boolean bookingIsForUser = booking.getCustomer().getUserId().equals(user.getUserId());
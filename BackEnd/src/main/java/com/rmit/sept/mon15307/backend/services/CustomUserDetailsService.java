@@ -1,14 +1,19 @@
 package com.rmit.sept.mon15307.backend.services;
 
 import com.rmit.sept.mon15307.backend.Repositories.UserRepository;
+import com.rmit.sept.mon15307.backend.cache.ExpiringCache;
+import com.rmit.sept.mon15307.backend.events.UserChangedEvent;
 import com.rmit.sept.mon15307.backend.model.UserAccount;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
@@ -16,6 +21,29 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Autowired
     private UserRepository userRepository;
 
+    // principals of recently authenticated requests, dropped when the user changes
+    private final ExpiringCache<Long, UserAccount> principals;
+
+    // current token version of each user, for principals built from token claims
+    private final ExpiringCache<Long, Long> tokenVersions;
+
+    // bumped on every invalidation, so a user loaded before one isn't kept
+    private final AtomicLong changes = new AtomicLong();
+
+    public CustomUserDetailsService(
+        @Value("${booking.principal-cache.max-entries:10000}")
+            int maxEntries,
+        @Value("${booking.principal-cache.ttl-seconds:60}")
+            long ttlSeconds,
+        @Value("${booking.token-versions.max-entries:100000}")
+            int versionMaxEntries,
+        @Value("${booking.token-versions.ttl-seconds:60}")
+            long versionTtlSeconds
+    ) {
+        this.principals = new ExpiringCache<>(maxEntries, ttlSeconds * 1000);
+        this.tokenVersions = new ExpiringCache<>(versionMaxEntries, versionTtlSeconds * 1000);
+    }
+
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         UserAccount user = userRepository.findByUsername(username);
@@ -24,11 +52,48 @@ public class CustomUserDetailsService implements UserDetailsService {
     }
 
 
-    @Transactional
+    // Called for every authenticated request, see JwtAuthenticationFilter
     public UserAccount loadUserById(Long id){
-        UserAccount user = userRepository.findByUserId(id);
+        UserAccount user = principals.get(id);
+        if (user != null) {
+            return user;
+        }
+
+        long changesBefore = changes.get();
+        user = userRepository.findByUserId(id);
         if(user==null) new UsernameNotFoundException("User not found");
+        synchronized (this) {
+            if (user != null && changes.get() == changesBefore) {
+                principals.put(id, user);
+            }
+        }
         return user;
 
     }
+
+    // Null when the user doesn't exist, see JwtAuthenticationFilter
+    public Long loadTokenVersion(Long id) {
+        Long version = tokenVersions.get(id);
+        if (version != null) {
+            return version;
+        }
+
+        long changesBefore = changes.get();
+        version = userRepository.findTokenVersionByUserId(id);
+        synchronized (this) {
+            if (version != null && changes.get() == changesBefore) {
+                tokenVersions.put(id, version);
+            }
+        }
+        return version;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        synchronized (this) {
+            changes.incrementAndGet();
+            principals.remove(event.getUserId());
+            tokenVersions.remove(event.getUserId());
+        }
+    }
 }
@@ -0,0 +1,61 @@
+package com.rmit.sept.mon15307.backend.services;
+
+import com.rmit.sept.mon15307.backend.Repositories.IdempotencyRecordRepository;
+import com.rmit.sept.mon15307.backend.model.IdempotencyRecord;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+
+// Shared by every node, so a retry landing on another node is still recognised
+@Service
+@ConditionalOnProperty(name = "booking.idempotency.store", havingValue = "database")
+@EnableScheduling
+public class DatabaseIdempotencyStore implements IdempotencyStore {
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Value("${booking.idempotency.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    @Override
+    public Long findBookingId(Long userId, String idempotencyKey) {
+        IdempotencyRecord record =
+            idempotencyRecordRepository.findByUserIdAndIdempotencyKeyAndCreatedAtAfter(userId,
+                                                                                       idempotencyKey,
+                                                                                       this.expiredBefore()
+            );
+        return record == null ? null : record.getBookingId();
+    }
+
+    @Override
+    public void saveBookingId(Long userId, String idempotencyKey, Long bookingId) {
+        try {
+            idempotencyRecordRepository.save(new IdempotencyRecord(userId, idempotencyKey, bookingId));
+        } catch (DataIntegrityViolationException e) {
+            // Either a concurrent retry already recorded this key, or it's a reuse of an
+            // expired key not yet cleaned up, whose record can be replaced
+            if (idempotencyRecordRepository.deleteByKeyCreatedBefore(userId,
+                                                                     idempotencyKey,
+                                                                     this.expiredBefore()
+            ) > 0) {
+                this.saveBookingId(userId, idempotencyKey, bookingId);
+            }
+        }
+    }
+
+    // Expired records are already ignored by lookups, this only keeps the table small
+    @Scheduled(fixedDelayString = "#{${booking.idempotency.cleanup-minutes:10} * 60 * 1000}")
+    public void deleteExpired() {
+        idempotencyRecordRepository.deleteCreatedBefore(this.expiredBefore());
+    }
+
+    private Date expiredBefore() {
+        return new Date(System.currentTimeMillis() - this.ttlMinutes * 60 * 1000);
+    }
+}
@@ -9,9 +9,13 @@ import com.rmit.sept.mon15307.backend.payload.AdminSetProducts;
 import com.rmit.sept.mon15307.backend.model.UserAccount;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.Set;
 import java.util.HashSet;
@@ -31,6 +35,59 @@ public class EmployeeService {
         return employee;
     }
 
+    // Employees keyed by id, all of which must exist
+    public Map<Long, Employee> findByEmployeeIds(Collection<Long> employeeIds) {
+        Map<Long, Employee> employees = new HashMap<>();
+        for (Employee employee : employeeRepository.findAllById(employeeIds)) {
+            employees.put(Long.parseLong(employee.getId()), employee);
+        }
+
+        for (Long employeeId : employeeIds) {
+            if (!employees.containsKey(employeeId)) {
+                throw new EmployeeNotFoundException("Employee not found");
+            }
+        }
+
+        return employees;
+    }
+
+    // Marks the employee's availability as changed, once per change, for every node.
+    // Returns the version it moved to, as the employee's row is locked until commit.
+    public long bumpAvailabilityVersion(Long employeeId, int changes) {
+        employeeRepository.incrementAvailabilityVersion(employeeId, changes);
+        return employeeRepository.findAvailabilityVersion(employeeId);
+    }
+
+    // Current availability version of the employee, or null if there's no such employee
+    public Long findAvailabilityVersion(Long employeeId) {
+        return employeeRepository.findAvailabilityVersion(employeeId);
+    }
+
+    // Availability version of each of the employees, keyed by employee id
+    public Map<Long, Long> findAvailabilityVersions(Collection<Long> employeeIds) {
+        Map<Long, Long> versions = new HashMap<>();
+        if (!employeeIds.isEmpty()) {
+            for (EmployeeRepository.AvailabilityVersion version
+                : employeeRepository.findAvailabilityVersions(employeeIds)) {
+                versions.put(version.getEmployeeId(), version.getVersion());
+            }
+        }
+
+        return versions;
+    }
+
+    // Employees who offer the given product
+    @Transactional(readOnly = true)
+    public List<Employee> findByProduct(Product product) {
+        return employeeRepository.findEmployeesByProduct(product);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Employee> findAllEmployeesWithUsers() {
+        return employeeRepository.findAllWithUser();
+    }
+
+    @Transactional(readOnly = true)
     public Iterable<Employee> findAllEmployees() {
         return employeeRepository.findAll();
     }
@@ -0,0 +1,10 @@
+package com.rmit.sept.mon15307.backend.services;
+
+// Remembers which booking a client's Idempotency-Key produced, so a retried
+// request can be answered without creating the booking again.
+public interface IdempotencyStore {
+    // Booking id previously created by this user with this key, or null
+    Long findBookingId(Long userId, String idempotencyKey);
+
+    void saveBookingId(Long userId, String idempotencyKey, Long bookingId);
+}
@@ -0,0 +1,32 @@
+package com.rmit.sept.mon15307.backend.services;
+
+import com.rmit.sept.mon15307.backend.cache.ExpiringCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+// Default store, local to this node and lost on restart
+@Service
+@ConditionalOnProperty(name = "booking.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+    private final ExpiringCache<String, Long> bookingIds;
+
+    public InMemoryIdempotencyStore(
+        @Value("${booking.idempotency.max-keys:10000}")
+            int maxKeys,
+        @Value("${booking.idempotency.ttl-minutes:60}")
+            long ttlMinutes
+    ) {
+        this.bookingIds = new ExpiringCache<>(maxKeys, ttlMinutes * 60 * 1000);
+    }
+
+    @Override
+    public Long findBookingId(Long userId, String idempotencyKey) {
+        return this.bookingIds.get(userId + ":" + idempotencyKey);
+    }
+
+    @Override
+    public void saveBookingId(Long userId, String idempotencyKey, Long bookingId) {
+        this.bookingIds.put(userId + ":" + idempotencyKey, bookingId);
+    }
+}
@@ -10,6 +10,7 @@ import com.rmit.sept.mon15307.backend.model.UserAccount;
 import com.rmit.sept.mon15307.backend.payload.AdminSetProducts;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
 
@@ -18,12 +19,19 @@ public class ProductService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Transactional(readOnly = true)
     public Iterable<Product> findAllProducts() {
         return productRepository.findAll();
     }
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Transactional
     public Product saveOrUpdateProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        resourceVersions.bumpProductsVersion();
+        return saved;
     }
 
     public Product findByProductId(String productId) {
@@ -37,6 +45,22 @@ public class ProductService {
         return product;
     }
 
+    // Products keyed by id, all of which must exist
+    public Map<Long, Product> findByProductIds(Collection<Long> productIds) {
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(productIds)) {
+            products.put(Long.parseLong(product.getId()), product);
+        }
+
+        for (Long productId : productIds) {
+            if (!products.containsKey(productId)) {
+                throw new ProductNotFoundException("Product ID '" + productId + "' not found");
+            }
+        }
+
+        return products;
+    }
+
     // Checks if all product ids specified in admin editing services request
     // currently exist in the system
     public void checkNonExistentProductIds(Iterable<Product> allProducts,
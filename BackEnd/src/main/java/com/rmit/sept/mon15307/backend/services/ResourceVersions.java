@@ -0,0 +1,66 @@
+package com.rmit.sept.mon15307.backend.services;
+
+import com.rmit.sept.mon15307.backend.Repositories.ResourceVersionRepository;
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
+import com.rmit.sept.mon15307.backend.business.DaySlots;
+import com.rmit.sept.mon15307.backend.model.ResourceVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// Versions of frequently polled resources, bumped on every write that changes them,
+// so conditional GETs can be answered without loading or serializing anything.
+// They are kept in the database, so every node hands out the same tags.
+@Service
+public class ResourceVersions {
+    private static final String PRODUCTS = "products";
+
+    @Autowired
+    private BusinessHours businessHours;
+
+    @Autowired
+    private ResourceVersionRepository resourceVersionRepository;
+
+    public String productsTag() {
+        return "\"" + this.productsVersion() + "\"";
+    }
+
+    private long productsVersion() {
+        Long version = resourceVersionRepository.findVersion(PRODUCTS);
+        return version == null ? 0 : version;
+    }
+
+    // Called in the transaction writing the products, so the bump commits with them
+    public void bumpProductsVersion() {
+        if (resourceVersionRepository.incrementVersion(PRODUCTS) == 0) {
+            resourceVersionRepository.save(new ResourceVersion(PRODUCTS, 1));
+        }
+    }
+
+    // Tag of an employee's availability at the given version, see
+    // AvailabilityService.getVersion. Kept in the database, that version is the same
+    // on every node. Besides it, the response depends on the day, on which of today's
+    // slots have started and on the product asked for.
+    public String availabilityTag(long availabilityVersion, String productId) {
+        LocalDate today = LocalDate.now();
+        DaySlots slots = businessHours.forDate(today);
+        long startedSlots = slots.slotsStartedBy(DaySlots.minuteOf(LocalTime.now()));
+
+        StringBuilder tag = new StringBuilder("\"")
+            .append(availabilityVersion)
+            .append('-')
+            .append(today)
+            .append('-')
+            .append(Long.toHexString(startedSlots));
+        if (productId != null) {
+            tag
+                .append('-')
+                .append(productId)
+                .append('-')
+                .append(this.productsVersion());
+        }
+        return tag.append('"').toString();
+    }
+}
@@ -1,18 +1,41 @@
 package com.rmit.sept.mon15307.backend.services;
 
 import com.rmit.sept.mon15307.backend.Repositories.ScheduleRepository;
+import com.rmit.sept.mon15307.backend.events.ScheduleChangedEvent;
 import com.rmit.sept.mon15307.backend.model.Employee;
 import com.rmit.sept.mon15307.backend.model.Schedule;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.Collection;
 
 @Service
 public class ScheduleService {
     @Autowired
     private ScheduleRepository scheduleRepository;
 
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public Schedule saveOrUpdateSchedule(Schedule schedule) {
+        Schedule saved = scheduleRepository.save(schedule);
+        String employeeId = saved.getEmployee().getId();
+        long version = employeeService.bumpAvailabilityVersion(Long.parseLong(employeeId), 1);
+        eventPublisher.publishEvent(new ScheduleChangedEvent(employeeId, saved.getId(), version));
+        return saved;
+    }
+
+    public Schedule findById(Long scheduleId) {
+        return scheduleRepository.findById(scheduleId).orElse(null);
+    }
+
     public Schedule findByEmployeeAndDate(Employee employee, LocalDate date) {
         // Only one per day per employee
         return scheduleRepository.findScheduleByEmployeeAndDate(employee, date);
@@ -27,4 +50,22 @@ public class ScheduleService {
             endDate
         );
     }
+
+    public Iterable<Schedule> findByEmployeesAndDateRange(
+        Collection<Employee> employees, LocalDate startDate, LocalDate endDate
+    ) {
+        return scheduleRepository.findSchedulesByEmployeeInAndDateBetween(
+            employees,
+            startDate,
+            endDate
+        );
+    }
+
+    // Superset of the requested employee-days: every schedule of any of the employees
+    // on any of the dates
+    public Iterable<Schedule> findByEmployeesAndDates(
+        Collection<Employee> employees, Collection<LocalDate> dates
+    ) {
+        return scheduleRepository.findSchedulesByEmployeeInAndDateIn(employees, dates);
+    }
 }
@@ -1,14 +1,21 @@
 package com.rmit.sept.mon15307.backend.services;
 
 import com.rmit.sept.mon15307.backend.Repositories.UserRepository;
+import com.rmit.sept.mon15307.backend.events.UserChangedEvent;
+import com.rmit.sept.mon15307.backend.exceptions.UserException;
 import com.rmit.sept.mon15307.backend.exceptions.UserNotFoundException;
 import com.rmit.sept.mon15307.backend.exceptions.UsernameAlreadyExistsException;
 import com.rmit.sept.mon15307.backend.model.UserAccount;
 import com.rmit.sept.mon15307.backend.payload.UserProfilePatch;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
 @Service
 public class UserService {
 
@@ -18,6 +25,9 @@ public class UserService {
     @Autowired
     private BCryptPasswordEncoder bCryptPasswordEncoder;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     public UserAccount saveOrUpdateUser(UserAccount newUser) {
 
         try{
@@ -26,7 +36,14 @@ public class UserService {
             newUser.setUsername(newUser.getUsername());
 
             newUser.setConfirmPassword("");
-            return userRepository.save(newUser);
+            boolean existing = newUser.getUserId() != null;
+            UserAccount saved = userRepository.save(newUser);
+            if (existing) {
+                // the password or roles may have changed, so tokens issued before can't stand
+                userRepository.incrementTokenVersion(saved.getUserId());
+            }
+            eventPublisher.publishEvent(new UserChangedEvent(saved.getUserId()));
+            return saved;
 
         }catch (Exception e){
             throw new UsernameAlreadyExistsException("Username '"+newUser.getUsername()+"' already exists");
@@ -46,6 +63,22 @@ public class UserService {
         return user;
     }
 
+    // Users keyed by id, all of which must exist
+    public Map<Long, UserAccount> findByUserIds(Collection<Long> userIds) {
+        Map<Long, UserAccount> users = new HashMap<>();
+        for (UserAccount user : userRepository.findAllById(userIds)) {
+            users.put(user.getUserId(), user);
+        }
+
+        for (Long userId : userIds) {
+            if (!users.containsKey(userId)) {
+                throw new UserNotFoundException("User ID '" + userId + "' not found");
+            }
+        }
+
+        return users;
+    }
+
     public UserAccount findByUsername(String username) {
         UserAccount user = userRepository.findByUsername(username);
 
@@ -65,7 +98,18 @@ public class UserService {
         }
     }
 
-    public UserAccount editUser(UserAccount user, UserProfilePatch patch) {
+    // Invalidates every token issued to the user so far
+    public void revokeTokens(Long userId) {
+        if (userRepository.incrementTokenVersion(userId) == 0) {
+            throw new UserNotFoundException("User ID '" + userId + "' not found");
+        }
+        eventPublisher.publishEvent(new UserChangedEvent(userId));
+    }
+
+    public UserAccount editUser(UserAccount principal, UserProfilePatch patch) {
+        // the principal may be cached or built from token claims, so edit the stored user
+        UserAccount user = this.findByUserId(principal.getUserId().toString());
+
         if (patch.getPreferredName() != null) {
             user.setPreferredName(patch.getPreferredName());
         }
@@ -82,6 +126,38 @@ public class UserService {
             user.setPhoneNumber(patch.getPhoneNumber());
         }
 
-        return userRepository.save(user);
+        UserAccount saved = userRepository.save(user);
+
+        // tokens carry the profile, so those issued before the edit can't stand;
+        // reloaded for the new token version
+        this.revokeTokens(saved.getUserId());
+        return this.findByUserId(saved.getUserId().toString());
+    }
+
+    // A user is exactly one of admin, worker or customer, see UserAccount.getRole
+    public UserAccount setRole(Long userId, String role) {
+        UserAccount user = this.findByUserId(userId.toString());
+
+        if ("admin".equals(role)) {
+            user.setAdmin(true);
+            user.setWorker(false);
+            user.setCustomer(false);
+        } else if ("worker".equals(role)) {
+            user.setAdmin(false);
+            user.setWorker(true);
+            user.setCustomer(false);
+        } else if ("customer".equals(role)) {
+            user.setAdmin(false);
+            user.setWorker(false);
+            user.setCustomer(true);
+        } else {
+            throw new UserException("Invalid role: " + role);
+        }
+
+        userRepository.save(user);
+
+        // tokens carry the roles, so those issued before can't stand
+        this.revokeTokens(userId);
+        return this.findByUserId(userId.toString());
     }
 }
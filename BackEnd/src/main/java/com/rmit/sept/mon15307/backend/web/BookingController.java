@@ -1,33 +1,49 @@
 package com.rmit.sept.mon15307.backend.web;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository.BookingListing;
+import com.rmit.sept.mon15307.backend.customSerializers.BookingsListSerializer;
 import com.rmit.sept.mon15307.backend.exceptions.BookingException;
+import com.rmit.sept.mon15307.backend.exceptions.ConflictException;
 import com.rmit.sept.mon15307.backend.exceptions.UserNotAuthorisedException;
 import com.rmit.sept.mon15307.backend.model.*;
 import com.rmit.sept.mon15307.backend.model.enumeration.BookingStatus;
+import com.rmit.sept.mon15307.backend.payload.BookingBatchRequest;
+import com.rmit.sept.mon15307.backend.payload.BookingFilter;
 import com.rmit.sept.mon15307.backend.payload.BookingPatch;
 import com.rmit.sept.mon15307.backend.payload.BookingRequest;
 import com.rmit.sept.mon15307.backend.services.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/bookings")
 @CrossOrigin
 public class BookingController {
+    private static final int MAX_PAGE_SIZE = 500;
+
     @Autowired
     private BookingService bookingService;
     @Autowired
@@ -39,14 +55,33 @@ public class BookingController {
     private ProductService productService;
     @Autowired
     private MapValidationErrorService mapValidationErrorService;
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    @Autowired
+    private BookingExportService bookingExportService;
+    @Autowired
+    private ObjectMapper objectMapper;
 
     @PostMapping("")
     public ResponseEntity<?> createNewBooking(@Valid @RequestBody BookingRequest bookingRequest, BindingResult result,
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @AuthenticationPrincipal UserAccount user) {
         ResponseEntity<?> errorMap = mapValidationErrorService.MapValidationService(result);
         if (errorMap != null)
             return errorMap;
 
+        // a retried request gets the original booking rather than a new one
+        if (idempotencyKey != null) {
+            if (idempotencyKey.isEmpty() || idempotencyKey.length() > 255) {
+                throw new BookingException("Invalid Idempotency-Key header");
+            }
+
+            Long bookingId = idempotencyStore.findBookingId(user.getUserId(), idempotencyKey);
+            if (bookingId != null) {
+                return this.bookingCreatedResponse(bookingId);
+            }
+        }
+
         // entities must exist
         UserAccount customer = userService.findByUserId(bookingRequest.getCustomerId());
         Employee employee = employeeService.findByEmployeeId(bookingRequest.getEmployeeId());
@@ -58,14 +93,84 @@ public class BookingController {
             throw new UserNotAuthorisedException("User not authorised to create booking for this " + "customer");
         }
 
-        Booking booking = bookingService.createBooking(customer, employee, product, bookingRequest);
+        Booking booking;
+        try {
+            booking = bookingService.createBooking(customer, employee, product, bookingRequest);
+        } catch (ConflictException e) {
+            // the original request may have finished while this retry was in flight
+            Long bookingId = idempotencyKey == null
+                    ? null
+                    : idempotencyStore.findBookingId(user.getUserId(), idempotencyKey);
+            if (bookingId == null) {
+                throw e;
+            }
+            return this.bookingCreatedResponse(bookingId);
+        }
+
+        if (idempotencyKey != null) {
+            idempotencyStore.saveBookingId(user.getUserId(), idempotencyKey, booking.getBookingId());
+        }
+
+        return this.bookingCreatedResponse(booking.getBookingId());
+    }
 
+    private ResponseEntity<?> bookingCreatedResponse(Long bookingId) {
         Map<String, String> response = new HashMap<>();
-        response.put("booking_id", booking.getBookingId().toString());
+        response.put("booking_id", bookingId.toString());
+
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<?> createNewBookings(@Valid @RequestBody BookingBatchRequest batchRequest,
+            BindingResult result, @AuthenticationPrincipal UserAccount user) {
+        ResponseEntity<?> errorMap = mapValidationErrorService.MapValidationService(result);
+        if (errorMap != null)
+            return errorMap;
+
+        List<BookingRequest> bookingRequests = batchRequest.getBookings();
+
+        // ids must be numeric, a bad one is reported with the position of its booking
+        Set<Long> customerIds = new HashSet<>();
+        Set<Long> employeeIds = new HashSet<>();
+        Set<Long> productIds = new HashSet<>();
+        for (int i = 0; i < bookingRequests.size(); i++) {
+            BookingRequest bookingRequest = bookingRequests.get(i);
+            customerIds.add(this.parseBatchId(bookingRequest.getCustomerId(), "customer_id", i));
+            employeeIds.add(this.parseBatchId(bookingRequest.getEmployeeId(), "employee_id", i));
+            productIds.add(this.parseBatchId(bookingRequest.getProductId(), "product_id", i));
+        }
+
+        // entities must exist, each type is looked up once for the whole batch
+        Map<Long, UserAccount> customers = userService.findByUserIds(customerIds);
+        Map<Long, Employee> employees = employeeService.findByEmployeeIds(employeeIds);
+        Map<Long, Product> products = productService.findByProductIds(productIds);
+
+        // customers must be the same as the current user, unless current user is an
+        // admin
+        for (Long customerId : customers.keySet()) {
+            if (!user.getUserId().equals(customerId) && !user.getAdmin()) {
+                throw new UserNotAuthorisedException("User not authorised to create booking for this " + "customer");
+            }
+        }
+
+        List<Booking> bookings = bookingService.createBookings(bookingRequests, customers, employees, products);
+
+        Map<String, List<String>> response = new HashMap<>();
+        response.put("booking_ids",
+                bookings.stream().map(b -> b.getBookingId().toString()).collect(Collectors.toList()));
 
         return new ResponseEntity<>(response, HttpStatus.CREATED);
     }
 
+    private long parseBatchId(String id, String field, int index) {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new BookingException("Invalid " + field + " for booking " + index);
+        }
+    }
+
     @GetMapping("/{bookingId}")
     public ResponseEntity<?> getBookingById(@PathVariable Long bookingId) {
         Booking booking = bookingService.findByBookingId(bookingId);
@@ -74,29 +179,126 @@ public class BookingController {
 
     @GetMapping("")
     public ResponseEntity<?> listUserBookings(@RequestParam("status") String statusQuery,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "customer", required = false) String customerId,
+            @RequestParam(value = "employee", required = false) String employeeId,
+            @RequestParam(value = "product", required = false) String productId,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "after", required = false) String after,
             @AuthenticationPrincipal UserAccount user) {
-        Collection<BookingStatus> bookingStatuses;
-        try {
-            bookingStatuses = Arrays.stream(statusQuery.split(",")).map(s -> BookingStatus.valueOf(s.toUpperCase()))
-                    .collect(Collectors.toList());
-        } catch (IllegalArgumentException e) {
-            throw new BookingException("Invalid booking status param: " + statusQuery);
+        BookingFilter filter = this.bookingFilter(statusQuery, from, to, customerId, employeeId, productId, user);
+
+        if (limit != null) {
+            return new ResponseEntity<>(this.listBookingsPage(filter, limit, after), HttpStatus.OK);
+        }
+
+        return new ResponseEntity<>(new BookingsList(bookingService.findBookings(filter)), HttpStatus.OK);
+    }
+
+    // Bookings the user asked for, restricted to those they are permitted to see
+    private BookingFilter bookingFilter(String statusQuery, LocalDate from, LocalDate to, String customerId,
+            String employeeId, String productId, UserAccount user) {
+        BookingFilter filter = new BookingFilter(this.parseStatuses(statusQuery));
+        if (from != null && to != null && to.isBefore(from)) {
+            throw new BookingException("Invalid date range: " + from + " to " + to);
+        }
+        filter.setFrom(from);
+        filter.setTo(to);
+        if (productId != null) {
+            filter.setProduct(productService.findByProductId(productId));
         }
 
-        Iterable<Booking> bookings;
         if (user.getAdmin()) {
             // user is permitted to retrieve bookings for all customers
-            bookings = bookingService.findAllBookingsByStatuses(bookingStatuses);
+            if (customerId != null) {
+                filter.setCustomer(userService.findByUserId(customerId));
+            }
+            if (employeeId != null) {
+                filter.setEmployee(employeeService.findByEmployeeId(employeeId));
+            }
         } else if (user.getWorker()) {
             // user is permitted to retrieve bookings for all customers to which they are
             // assigned
-            bookings = bookingService.findWorkerBookingsByStatuses(user, bookingStatuses);
+            Employee employee = employeeService.findByByUser(user);
+            if (employeeId != null && !employeeId.equals(employee.getId())) {
+                throw new UserNotAuthorisedException("User not authorised to view bookings for this employee");
+            }
+            if (customerId != null) {
+                filter.setCustomer(userService.findByUserId(customerId));
+            }
+            filter.setEmployee(employee);
         } else {
             // user is permitted to retrieve only their own bookings
-            bookings = bookingService.findUserBookingsByStatuses(user, bookingStatuses);
+            if (customerId != null && !customerId.equals(user.getUserId().toString())) {
+                throw new UserNotAuthorisedException("User not authorised to view bookings for this customer");
+            }
+            if (employeeId != null) {
+                filter.setEmployee(employeeService.findByEmployeeId(employeeId));
+            }
+            filter.setCustomer(user);
         }
 
-        return new ResponseEntity<>(new BookingsList(bookings), HttpStatus.OK);
+        return filter;
+    }
+
+    // Same bookings as listUserBookings, written out as they are read from the
+    // database rather than loaded into a list first, for exports of any size
+    @GetMapping(path = "/export", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUserBookings(@RequestParam("status") String statusQuery,
+            @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(value = "customer", required = false) String customerId,
+            @RequestParam(value = "employee", required = false) String employeeId,
+            @RequestParam(value = "product", required = false) String productId,
+            @AuthenticationPrincipal UserAccount user) {
+        BookingFilter filter = this.bookingFilter(statusQuery, from, to, customerId, employeeId, productId, user);
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+                json.writeStartObject();
+                json.writeArrayFieldStart("bookings");
+
+                bookingExportService.exportBookings(filter, booking -> BookingsListSerializer.writeBooking(json,
+                        booking));
+
+                json.writeEndArray();
+                json.writeEndObject();
+            }
+        };
+        return new ResponseEntity<>(body, HttpStatus.OK);
+    }
+
+    private Collection<BookingStatus> parseStatuses(String statusQuery) {
+        try {
+            return Arrays.stream(statusQuery.split(",")).map(s -> BookingStatus.valueOf(s.toUpperCase()))
+                    .collect(Collectors.toList());
+        } catch (IllegalArgumentException e) {
+            throw new BookingException("Invalid booking status param: " + statusQuery);
+        }
+    }
+
+    // Keyset pagination: the cursor is the id of the last booking on the previous page
+    private BookingsList listBookingsPage(BookingFilter filter, int limit, String after) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BookingException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        long afterId = 0;
+        if (after != null) {
+            try {
+                afterId = Long.parseLong(after);
+            } catch (NumberFormatException e) {
+                throw new BookingException("Invalid cursor: " + after);
+            }
+        }
+
+        List<BookingListing> bookings = bookingService.findBookings(filter, afterId, limit);
+
+        // a full page may have more after it
+        String nextCursor = bookings.size() < limit ? null
+                : bookings.get(bookings.size() - 1).getBookingId().toString();
+        return new BookingsList(bookings, nextCursor);
     }
 
     @PatchMapping("/{bookingId}")
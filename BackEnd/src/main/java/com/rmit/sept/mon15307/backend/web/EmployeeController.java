@@ -1,5 +1,8 @@
 package com.rmit.sept.mon15307.backend.web;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
+import com.rmit.sept.mon15307.backend.exceptions.BookingException;
 import com.rmit.sept.mon15307.backend.exceptions.EmployeeNotFoundException;
 import com.rmit.sept.mon15307.backend.exceptions.InvalidProductException;
 import com.rmit.sept.mon15307.backend.exceptions.NotAuthorisedException;
@@ -7,19 +10,31 @@ import com.rmit.sept.mon15307.backend.model.Employee;
 import com.rmit.sept.mon15307.backend.model.Product;
 import com.rmit.sept.mon15307.backend.model.UserAccount;
 import com.rmit.sept.mon15307.backend.payload.AdminSetProducts;
+import com.rmit.sept.mon15307.backend.payload.AvailabilityGrid;
+import com.rmit.sept.mon15307.backend.payload.AvailableStaffResponse;
 import com.rmit.sept.mon15307.backend.payload.EmployeeAvailabilityResponse;
 import com.rmit.sept.mon15307.backend.services.*;
+import com.rmit.sept.mon15307.backend.services.AvailabilityService.ScheduledDay;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.validation.Valid;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,9 +55,27 @@ public class EmployeeController {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private AvailabilityService availabilityService;
+
+    @Autowired
+    private AvailabilityCache availabilityCache;
+
+    @Autowired
+    private ResourceVersions resourceVersions;
+
+    @Autowired
+    private AvailabilityBroadcaster availabilityBroadcaster;
+
     @Autowired
     private MapValidationErrorService mapValidationErrorService;
 
+    @Autowired
+    private BusinessHours businessHours;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @GetMapping("")
     public ResponseEntity<?> listEmployees() {
         // TODO: authentication
@@ -58,10 +91,54 @@ public class EmployeeController {
     @GetMapping("/{employeeId}/times")
     public ResponseEntity<?> getEmployeeTimesById(
         @PathVariable
-            String employeeId
+            String employeeId,
+        @RequestParam(value = "product", required = false)
+            String productId,
+        WebRequest request
     ) {
         // TODO: authentication
 
+        // read once for the ETag and the cache, shared by every node
+        Long version = availabilityService.getVersion(employeeId);
+        if (version == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        // unchanged since the client's copy: 304 without loading anything
+        if (request.checkNotModified(resourceVersions.availabilityTag(version, productId))) {
+            return null;
+        }
+
+        // with a product, only list times at which its whole duration fits
+        int durationMinutes =
+            productId == null ? 0 : productService.findByProductId(productId).getDuration();
+
+        EmployeeAvailabilityResponse availability;
+        try {
+            availability = availabilityCache.get(employeeId,
+                                                 version,
+                                                 durationMinutes,
+                                                 () -> new EmployeeAvailabilityResponse(
+                                                     employeeService.findByEmployeeId(employeeId),
+                                                     availabilityService,
+                                                     durationMinutes
+                                                 )
+            );
+        } catch (EmployeeNotFoundException e) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        // served as JSON, Smile or CBOR depending on Accept, all under the one ETag
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(availability);
+    }
+
+    // Pushes "taken" and "freed" deltas for the employee's slots as bookings are made
+    // and cancelled, and "reload" when their schedule changes
+    @GetMapping(path = "/{employeeId}/times/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamEmployeeTimesById(
+        @PathVariable
+            String employeeId
+    ) {
         Employee employee;
         try {
             employee = employeeService.findByEmployeeId(employeeId);
@@ -69,9 +146,104 @@ public class EmployeeController {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        EmployeeAvailabilityResponse availability =
-            new EmployeeAvailabilityResponse(employee, bookingService, scheduleService);
-        return new ResponseEntity<>(availability, HttpStatus.OK);
+        return new ResponseEntity<>(availabilityBroadcaster.subscribe(employee.getId()),
+                                    HttpStatus.OK
+        );
+    }
+
+    @GetMapping("/times/cache")
+    public ResponseEntity<?> getAvailabilityCacheStats(
+        @AuthenticationPrincipal
+            UserAccount user
+    ) {
+        if (!user.getAdmin()) {
+            throw new NotAuthorisedException("User not authorised");
+        }
+
+        return new ResponseEntity<>(availabilityCache.stats(), HttpStatus.OK);
+    }
+
+    // Availability of all staff (or of those offering the product) for each day of
+    // [from, to], streamed as a compact grid, see AvailabilityGrid. The range must lie
+    // within the days the availability read model holds.
+    @GetMapping(path = "/availability", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAvailabilityGrid(
+        @RequestParam("from")
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate from,
+        @RequestParam("to")
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+            LocalDate to,
+        @RequestParam(value = "product", required = false)
+            String productId
+    ) {
+        LocalDate today = LocalDate.now();
+        LocalDate firstDay = AvailabilityService.firstDay(today);
+        LocalDate lastDay = AvailabilityService.lastDay(today);
+        if (to.isBefore(from) || from.isBefore(firstDay) || to.isAfter(lastDay)) {
+            throw new BookingException("Range must be within " + firstDay + " and " + lastDay);
+        }
+
+        List<Employee> employees = new ArrayList<>();
+        int durationMinutes = 0;
+        if (productId == null) {
+            employees.addAll(employeeService.findAllEmployeesWithUsers());
+        } else {
+            Product product = productService.findByProductId(productId);
+            employees.addAll(employeeService.findByProduct(product));
+            durationMinutes = product.getDuration();
+        }
+
+        AvailabilityGrid grid = new AvailabilityGrid(objectMapper.getFactory(),
+                                                     businessHours,
+                                                     availabilityService,
+                                                     employees,
+                                                     from,
+                                                     to,
+                                                     durationMinutes
+        );
+        return new ResponseEntity<>(grid, HttpStatus.OK);
+    }
+
+    // Employees offering the product who are free to take it at some slot within
+    // [from, to], answered from a single pass over all of their schedules
+    @GetMapping("/search")
+    public ResponseEntity<?> searchAvailableEmployees(
+        @RequestParam("product")
+            String productId,
+        @RequestParam("from")
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime from,
+        @RequestParam("to")
+        @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            LocalDateTime to
+    ) {
+        if (to.isBefore(from)) {
+            throw new BookingException("Search range ends before it starts");
+        }
+
+        Product product = productService.findByProductId(productId);
+        List<Employee> employees = employeeService.findByProduct(product);
+        Map<String, List<ScheduledDay>> scheduledDays =
+            availabilityService.getScheduledDays(employees);
+
+        List<AvailableStaffResponse> available = new ArrayList<>();
+        for (Employee employee : employees) {
+            AvailableStaffResponse staff = new AvailableStaffResponse(employee,
+                                                                      scheduledDays.get(employee.getId()),
+                                                                      product.getDuration(),
+                                                                      from,
+                                                                      to
+            );
+            if (staff.isAvailable()) {
+                available.add(staff);
+            }
+        }
+
+        Map<String, List<AvailableStaffResponse>> response = new HashMap<>();
+        response.put("staff", available);
+
+        return new ResponseEntity<>(response, HttpStatus.OK);
     }
 
     @PutMapping("/{staffId}/products")
@@ -4,12 +4,15 @@ import com.rmit.sept.mon15307.backend.model.Product;
 import com.rmit.sept.mon15307.backend.model.UserAccount;
 import com.rmit.sept.mon15307.backend.services.MapValidationErrorService;
 import com.rmit.sept.mon15307.backend.services.ProductService;
+import com.rmit.sept.mon15307.backend.services.ResourceVersions;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.validation.Valid;
 import java.util.HashMap;
@@ -25,12 +28,21 @@ public class ProductController {
     @Autowired
     private MapValidationErrorService mapValidationErrorService;
 
+    @Autowired
+    private ResourceVersions resourceVersions;
+
     @GetMapping("")
-    public ResponseEntity<?> listProducts() {
+    public ResponseEntity<?> listProducts(WebRequest request) {
+        // unchanged since the client's copy: 304 without loading anything
+        if (request.checkNotModified(resourceVersions.productsTag())) {
+            return null;
+        }
+
         Map<String, Iterable<Product>> response = new HashMap<>();
         Iterable<Product> products = productService.findAllProducts();
         response.put("products", products);
-        return new ResponseEntity<>(response, HttpStatus.OK);
+        // served as JSON, Smile or CBOR depending on Accept, all under the one ETag
+        return ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT).body(response);
     }
 
     @PostMapping("")
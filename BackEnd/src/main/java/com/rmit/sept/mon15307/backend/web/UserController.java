@@ -101,9 +101,40 @@ public class UserController {
 
         UserAccount updatedUser = userService.editUser(user, userProfilePatch);
 
-        Map<String, UserAccount> response = new HashMap<>();
+        // the edit revoked the user's tokens, so the client gets a new one
+        String jwt = TOKEN_PREFIX
+                + tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(updatedUser, null));
+
+        Map<String, Object> response = new HashMap<>();
         response.put("user", updatedUser);
+        response.put("token", jwt);
 
         return new ResponseEntity<>(response, HttpStatus.OK);
     }
+
+    @JsonView(UserAccount.UserAccountViews.Public.class)
+    @PutMapping("/{userId}/role")
+    public ResponseEntity<?> setUserRole(@PathVariable Long userId, @RequestBody Map<String, String> body,
+            @AuthenticationPrincipal UserAccount user) {
+        if (!user.getAdmin()) {
+            throw new UserNotAuthorisedException("Permission denied");
+        }
+
+        Map<String, UserAccount> response = new HashMap<>();
+        response.put("user", userService.setRole(userId, body.get("role")));
+
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    // Signs the user out everywhere: every token issued to them so far stops working
+    @PostMapping("/{userId}/revoke")
+    public ResponseEntity<?> revokeUserTokens(@PathVariable Long userId, @AuthenticationPrincipal UserAccount user) {
+        if (!user.getAdmin() && !user.getUserId().equals(userId)) {
+            throw new UserNotAuthorisedException("Permission denied");
+        }
+
+        userService.revokeTokens(userId);
+
+        return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    }
 }
\ No newline at end of file
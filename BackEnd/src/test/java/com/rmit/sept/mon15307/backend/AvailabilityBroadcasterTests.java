@@ -0,0 +1,148 @@
+package com.rmit.sept.mon15307.backend;
+
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
+import com.rmit.sept.mon15307.backend.business.BusinessHoursProperties;
+import com.rmit.sept.mon15307.backend.events.AvailabilityChangedEvent;
+import com.rmit.sept.mon15307.backend.services.AvailabilityBroadcaster;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// Streams of clients that stop reading, whose sends block until the connection
+// gives up, must not hold up everyone else's
+public class AvailabilityBroadcasterTests {
+    private static final int MAX_PENDING = 4;
+
+    private final Deque<SseEmitter> emitters = new ArrayDeque<>();
+
+    private final CountDownLatch unstall = new CountDownLatch(1);
+
+    private AvailabilityBroadcaster broadcaster;
+
+    @BeforeEach
+    public void setup() {
+        broadcaster = new AvailabilityBroadcaster(30, MAX_PENDING) {
+            @Override
+            protected SseEmitter createEmitter(long timeoutMillis) {
+                return emitters.removeFirst();
+            }
+        };
+        ReflectionTestUtils.setField(broadcaster,
+                                     "businessHours",
+                                     new BusinessHours(new BusinessHoursProperties())
+        );
+        ReflectionTestUtils.setField(broadcaster,
+                                     "objectMapper",
+                                     Jackson2ObjectMapperBuilder.json().build()
+        );
+    }
+
+    @AfterEach
+    public void teardown() {
+        unstall.countDown();
+        broadcaster.shutdown();
+    }
+
+    private void publish(int count) {
+        LocalDate date = LocalDate.now().plusDays(1);
+        for (int i = 0; i < count; i++) {
+            broadcaster.onAvailabilityChanged(new AvailabilityChangedEvent("1", 1L, date, 1L << i, true, i + 1));
+        }
+    }
+
+    @Test
+    public void shouldKeepStreamingPastStalledSubscriber() throws Exception {
+        StalledEmitter stalled = new StalledEmitter();
+        RecordingEmitter reading = new RecordingEmitter();
+        emitters.add(stalled);
+        emitters.add(reading);
+        broadcaster.subscribe("1");
+        broadcaster.subscribe("1");
+
+        publish(1);
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+        assertTrue(reading.received.tryAcquire(1, 5, TimeUnit.SECONDS));
+
+        publish(MAX_PENDING);
+        assertTrue(reading.received.tryAcquire(MAX_PENDING, 5, TimeUnit.SECONDS));
+
+        // the stalled one falls behind and is closed, the other carries on
+        publish(1);
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(reading.received.tryAcquire(1, 5, TimeUnit.SECONDS));
+        assertEquals(1, stalled.sends);
+        assertEquals(1, reading.completed.getCount());
+    }
+
+    @Test
+    public void shouldCloseStreamOnlyOnceMaxPendingBehind() throws Exception {
+        StalledEmitter stalled = new StalledEmitter();
+        emitters.add(stalled);
+        broadcaster.subscribe("1");
+
+        publish(1);
+        assertTrue(stalled.sending.await(5, TimeUnit.SECONDS));
+
+        // queued behind the one being sent
+        publish(MAX_PENDING);
+        assertEquals(1, stalled.completed.getCount());
+
+        publish(1);
+        assertTrue(stalled.completed.await(5, TimeUnit.SECONDS));
+    }
+
+    // a client that has stopped reading: the first send blocks
+    private class StalledEmitter extends SseEmitter {
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile int sends;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            sends++;
+            sending.countDown();
+            try {
+                unstall.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Broken pipe");
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+            super.complete();
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private final Semaphore received = new Semaphore(0);
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            received.release();
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed.countDown();
+            super.complete();
+        }
+    }
+}
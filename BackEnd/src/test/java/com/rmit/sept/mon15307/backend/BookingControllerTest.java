@@ -1,7 +1,13 @@
 package com.rmit.sept.mon15307.backend;
 
 import com.rmit.sept.mon15307.backend.Repositories.*;
+import com.rmit.sept.mon15307.backend.exceptions.CustomResponseEntityExceptionHandler;
 import com.rmit.sept.mon15307.backend.model.Booking;
+import com.rmit.sept.mon15307.backend.model.Employee;
+import com.rmit.sept.mon15307.backend.model.Product;
+import com.rmit.sept.mon15307.backend.model.Schedule;
+import com.rmit.sept.mon15307.backend.model.UserAccount;
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
 import com.rmit.sept.mon15307.backend.security.JwtAuthenticationEntryPoint;
 import com.rmit.sept.mon15307.backend.services.*;
 import com.rmit.sept.mon15307.backend.web.BookingController;
@@ -14,25 +20,44 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.LocalDate;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest
 @AutoConfigureMockMvc(addFilters = false) // disable CSRF protection
 @ContextConfiguration(classes = { JwtAuthenticationEntryPoint.class })
 @Import({ BookingController.class, BookingService.class, UserService.class, EmployeeService.class,
-        ScheduleService.class, ProductService.class, MapValidationErrorService.class })
+        ScheduleService.class, ProductService.class, MapValidationErrorService.class,
+        InMemoryIdempotencyStore.class, CustomResponseEntityExceptionHandler.class,
+        BusinessHours.class, ResourceVersions.class })
 class BookingControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
     @MockBean
     private BookingsRepository bookingsRepository;
 
+    @MockBean
+    private BookingSlotRepository bookingSlotRepository;
+
+    @MockBean
+    private BookingExportService bookingExportService;
+
     @MockBean
     private UserRepository userRepository;
 
@@ -48,6 +73,9 @@ class BookingControllerTest {
     @MockBean
     private ProductRepository productRepository;
 
+    @MockBean
+    private ResourceVersionRepository resourceVersionRepository;
+
     @Before
     public void setup() {
         // TODO: create test customer (pending UserService)
@@ -84,7 +112,187 @@ class BookingControllerTest {
 
     @Test
     public void shouldRejectDoubleBooking() throws Exception {
+        UserAccount customer = new UserAccount();
+        customer.setUserId(1L);
+        customer.setAdmin(false);
+        customer.setWorker(false);
+        customer.setCustomer(true);
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(customer, null));
+
+        Product product = new Product();
+        product.setDuration(60);
+
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        Mockito.when(userRepository.findByUserId(1L)).thenReturn(customer);
+        Mockito.when(employeeRepository.findByEmployeeId(1L)).thenReturn(new Employee());
+        Mockito.when(productRepository.findByProductId(1L)).thenReturn(product);
+        Schedule schedule = Mockito.mock(Schedule.class);
+        Mockito.when(schedule.getDate()).thenReturn(tomorrow);
+        Mockito
+            .when(scheduleRepository.findScheduleByEmployeeAndDate(Mockito.any(), Mockito.eq(tomorrow)))
+            .thenReturn(schedule);
+
+        // another booking already holds one of the requested slots
+        Mockito
+            .doThrow(new DataIntegrityViolationException("duplicate slot"))
+            .when(bookingSlotRepository)
+            .flush();
+
+        String body = "{\n" + "  \"customer_id\": \"1\",\n" + "  \"employee_id\": \"1\",\n"
+                + "  \"product_id\": \"1\",\n" + "  \"appointment_date\": \"" + tomorrow + "\",\n"
+                + "  \"appointment_time\": \"10:30\"\n" + "}";
+        mockMvc
+            .perform(post("/api/bookings").contentType("application/json").content(body))
+            .andExpect(status().isConflict());
+
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void shouldRejectUnsupportedTimeSlot() throws Exception {
+        UserAccount customer = new UserAccount();
+        customer.setUserId(1L);
+        customer.setAdmin(false);
+        customer.setWorker(false);
+        customer.setCustomer(true);
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(customer, null));
+
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        Mockito.when(userRepository.findByUserId(1L)).thenReturn(customer);
+        Mockito.when(employeeRepository.findByEmployeeId(1L)).thenReturn(new Employee());
+        Mockito.when(productRepository.findByProductId(1L)).thenReturn(new Product());
+
+        // outside business hours
+        String body = "{\n" + "  \"customer_id\": \"1\",\n" + "  \"employee_id\": \"1\",\n"
+                + "  \"product_id\": \"1\",\n" + "  \"appointment_date\": \"" + tomorrow + "\",\n"
+                + "  \"appointment_time\": \"08:00\"\n" + "}";
+        mockMvc
+            .perform(post("/api/bookings").contentType("application/json").content(body))
+            .andExpect(status().isBadRequest());
+
+        Mockito.verify(bookingsRepository, Mockito.never()).saveAll(Mockito.any());
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void shouldRejectBookingEndingAfterClosing() throws Exception {
+        UserAccount customer = new UserAccount();
+        customer.setUserId(1L);
+        customer.setAdmin(false);
+        customer.setWorker(false);
+        customer.setCustomer(true);
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(customer, null));
+
+        Product product = new Product();
+        product.setDuration(60);
+
+        String tomorrow = LocalDate.now().plusDays(1).toString();
+        Mockito.when(userRepository.findByUserId(1L)).thenReturn(customer);
+        Mockito.when(employeeRepository.findByEmployeeId(1L)).thenReturn(new Employee());
+        Mockito.when(productRepository.findByProductId(1L)).thenReturn(product);
+
+        // last slot of the day, but the product runs past closing
+        String body = "{\"customer_id\": \"1\", \"employee_id\": \"1\", \"product_id\": \"1\","
+                + " \"appointment_date\": \"" + tomorrow + "\", \"appointment_time\": \"16:30\"}";
+        mockMvc
+            .perform(post("/api/bookings").contentType("application/json").content(body))
+            .andExpect(status().isBadRequest());
+
+        Mockito.verify(bookingsRepository, Mockito.never()).saveAll(Mockito.any());
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void shouldRejectEmptyBatch() throws Exception {
+        mockMvc
+            .perform(post("/api/bookings/batch")
+                         .contentType("application/json")
+                         .content("{\"bookings\": []}"))
+            .andExpect(status().isBadRequest());
+
+        Mockito.verify(bookingsRepository, Mockito.never()).saveAll(Mockito.any());
+    }
+
+    @Test
+    public void shouldRejectNonNumericIdInBatch() throws Exception {
+        String tomorrow = LocalDate.now().plusDays(1).toString();
+        String body = "{\"bookings\": ["
+                + "{\"customer_id\": \"1\", \"employee_id\": \"1\", \"product_id\": \"1\","
+                + " \"appointment_date\": \"" + tomorrow + "\", \"appointment_time\": \"10:00\"},"
+                + "{\"customer_id\": \"1\", \"employee_id\": \"abc\", \"product_id\": \"1\","
+                + " \"appointment_date\": \"" + tomorrow + "\", \"appointment_time\": \"11:00\"}]}";
+        mockMvc
+            .perform(post("/api/bookings/batch").contentType("application/json").content(body))
+            .andExpect(status().isBadRequest())
+            .andExpect(content().string(containsString("employee_id for booking 1")));
+
+        Mockito.verify(bookingsRepository, Mockito.never()).saveAll(Mockito.any());
+    }
+
+    @Test
+    public void shouldReturnOriginalBookingForRetriedRequest() throws Exception {
+        UserAccount customer = new UserAccount();
+        customer.setUserId(1L);
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(customer, null));
+
+        idempotencyStore.saveBookingId(1L, "retry-key", 42L);
+
+        String body = "{\n" + "  \"customer_id\": \"1\",\n" + "  \"employee_id\": \"1\",\n"
+                + "  \"product_id\": \"1\",\n" + "  \"appointment_date\": \"" + LocalDate.now() + "\",\n"
+                + "  \"appointment_time\": \"16:30\"\n" + "}";
+        mockMvc
+            .perform(post("/api/bookings")
+                         .header("Idempotency-Key", "retry-key")
+                         .contentType("application/json")
+                         .content(body))
+            .andExpect(status().isCreated())
+            .andExpect(content().json("{\"booking_id\": \"42\"}"));
+
+        Mockito.verify(bookingsRepository, Mockito.never()).saveAll(Mockito.any());
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void shouldRejectOversizedPage() throws Exception {
+        UserAccount customer = new UserAccount();
+        customer.setUserId(1L);
+        customer.setAdmin(false);
+        customer.setWorker(false);
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(customer, null));
+
+        mockMvc
+            .perform(get("/api/bookings").param("status", "pending").param("limit", "501"))
+            .andExpect(status().isBadRequest());
+
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    public void shouldRejectListingOtherCustomersBookings() throws Exception {
+        UserAccount customer = new UserAccount();
+        customer.setUserId(1L);
+        customer.setAdmin(false);
+        customer.setWorker(false);
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(customer, null));
+
+        mockMvc
+            .perform(get("/api/bookings").param("status", "pending").param("customer", "2"))
+            .andExpect(status().is4xxClientError());
 
+        Mockito.verify(bookingsRepository, Mockito.never()).findListings(Mockito.any(), Mockito.any(), Mockito.any());
+        SecurityContextHolder.clearContext();
     }
 
     @Test
@@ -0,0 +1,450 @@
+package com.rmit.sept.mon15307.backend;
+
+import com.rmit.sept.mon15307.backend.Repositories.EmployeeRepository;
+import com.rmit.sept.mon15307.backend.Repositories.ProductRepository;
+import com.rmit.sept.mon15307.backend.Repositories.UserRepository;
+import com.rmit.sept.mon15307.backend.model.Employee;
+import com.rmit.sept.mon15307.backend.model.Product;
+import com.rmit.sept.mon15307.backend.model.UserAccount;
+import com.rmit.sept.mon15307.backend.services.ScheduleService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Booking flows against a real (in-memory) database, for behaviour the mocked
+// repositories of the controller tests can't show
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:bookings;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.show-sql=false"
+})
+@DirtiesContext
+public class BookingIntegrationTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ScheduleService scheduleService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UserAccount customer;
+
+    private Employee employee;
+
+    private Product product;
+
+    private LocalDate tomorrow;
+
+    @BeforeEach
+    public void setup() {
+        customer = userRepository.save(newUser("customer@example.com"));
+        UserAccount worker = userRepository.save(newUser("worker@example.com"));
+
+        // employees and schedules are only ever created by seeding the database
+        jdbcTemplate.update("insert into employee (created_at, updated_at, user_id) values (now(), now(), ?)",
+                            worker.getUserId()
+        );
+        employee = employeeRepository.findAll().iterator().next();
+
+        tomorrow = LocalDate.now().plusDays(1);
+        jdbcTemplate.update(
+            "insert into schedule (created_at, updated_at, date, scheduled, employee_id) values (now(), now(), ?, true, ?)",
+            tomorrow,
+            Long.parseLong(employee.getId())
+        );
+
+        product = new Product();
+        product.setName("Haircut");
+        product.setDescription("Cut and style");
+        product.setPrice(3000);
+        product.setDuration(60);
+        product = productRepository.save(product);
+
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(customer, null));
+    }
+
+    @AfterEach
+    public void teardown() {
+        SecurityContextHolder.clearContext();
+        jdbcTemplate.execute("delete from booking_slot");
+        jdbcTemplate.execute("delete from booking");
+        jdbcTemplate.execute("delete from schedule");
+        jdbcTemplate.execute("delete from employee");
+        jdbcTemplate.execute("delete from product");
+        jdbcTemplate.execute("delete from user_account");
+    }
+
+    private static UserAccount newUser(String username) {
+        UserAccount user = new UserAccount();
+        user.setFullName("Test User");
+        user.setPreferredName("Test");
+        user.setUsername(username);
+        user.setPassword("password");
+        user.setPhoneNumber("0400000000");
+        user.setAdmin(false);
+        user.setWorker(false);
+        user.setCustomer(true);
+        return user;
+    }
+
+    private String bookingBody(String time) {
+        return "{\"customer_id\": \"" + customer.getUserId() + "\", \"employee_id\": \"" + employee.getId()
+            + "\", \"product_id\": \"" + product.getId() + "\", \"appointment_date\": \"" + tomorrow
+            + "\", \"appointment_time\": \"" + time + "\"}";
+    }
+
+    private Long book(String time) throws Exception {
+        String response = mockMvc
+            .perform(post("/api/bookings").contentType("application/json").content(bookingBody(time)))
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        return Long.parseLong(response.replaceAll("[^0-9]", ""));
+    }
+
+    @Test
+    public void shouldFreeSlotsOfCancelledBooking() throws Exception {
+        Long bookingId = book("11:00");
+
+        mockMvc
+            .perform(post("/api/bookings").contentType("application/json").content(bookingBody("11:30")))
+            .andExpect(status().isConflict());
+
+        mockMvc
+            .perform(patch("/api/bookings/" + bookingId)
+                         .contentType("application/json")
+                         .content("{\"status\": \"cancelled\"}"))
+            .andExpect(status().isOk());
+
+        book("11:30");
+    }
+
+    @Test
+    public void shouldSeeAvailabilityChangedByAnotherNode() throws Exception {
+        String times = "/api/staff/" + employee.getId() + "/times?product=" + product.getId();
+        book("11:00");
+
+        String etag = mockMvc
+            .perform(get(times))
+            .andExpect(status().isOk())
+            .andExpect(content().string(not(containsString("\"11:00\""))))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+        mockMvc.perform(get(times).header("If-None-Match", etag)).andExpect(status().isNotModified());
+
+        // cancelled elsewhere: straight in the database, with no event on this node
+        jdbcTemplate.execute("delete from booking_slot");
+        jdbcTemplate.execute("update booking set status = 'CANCELLED'");
+        jdbcTemplate.execute("update employee set availability_version = availability_version + 1");
+
+        mockMvc
+            .perform(get(times).header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"11:00\"")));
+    }
+
+    // Schedules added straight to the database without moving the employee's version,
+    // so they only show up if the employee's days are loaded again
+    private void addUnannouncedSchedule(LocalDate date) {
+        jdbcTemplate.update(
+            "insert into schedule (created_at, updated_at, date, scheduled, employee_id) values (now(), now(), ?, true, ?)",
+            date,
+            Long.parseLong(employee.getId())
+        );
+    }
+
+    @Test
+    public void shouldApplyOwnBookingsToCachedDays() throws Exception {
+        String times = "/api/staff/" + employee.getId() + "/times";
+        mockMvc.perform(get(times)).andExpect(status().isOk());
+
+        LocalDate hidden = tomorrow.plusDays(1);
+        addUnannouncedSchedule(hidden);
+        book("11:00");
+
+        mockMvc
+            .perform(get(times))
+            .andExpect(status().isOk())
+            .andExpect(content().string(not(containsString("\"11:00\""))))
+            .andExpect(content().string(not(containsString(hidden.toString()))));
+
+        Long bookingId = book("14:00");
+        mockMvc
+            .perform(patch("/api/bookings/" + bookingId)
+                         .contentType("application/json")
+                         .content("{\"status\": \"cancelled\"}"))
+            .andExpect(status().isOk());
+
+        mockMvc
+            .perform(get(times))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"14:00\"")))
+            .andExpect(content().string(not(containsString("\"11:00\""))))
+            .andExpect(content().string(not(containsString(hidden.toString()))));
+    }
+
+    @Test
+    public void shouldApplyOwnScheduleChangesToCachedDays() throws Exception {
+        String times = "/api/staff/" + employee.getId() + "/times";
+        String etag = mockMvc
+            .perform(get(times))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+        LocalDate saved = tomorrow.plusDays(1);
+        LocalDate hidden = tomorrow.plusDays(2);
+        addUnannouncedSchedule(saved);
+        addUnannouncedSchedule(hidden);
+        mockMvc.perform(get(times).header("If-None-Match", etag)).andExpect(status().isNotModified());
+
+        scheduleService.saveOrUpdateSchedule(scheduleService.findByEmployeeAndDate(employee, saved));
+
+        mockMvc
+            .perform(get(times).header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString(tomorrow.toString())))
+            .andExpect(content().string(containsString(saved.toString())))
+            .andExpect(content().string(not(containsString(hidden.toString()))));
+    }
+
+    @Test
+    public void shouldSeeProductsChangedByAnotherNode() throws Exception {
+        mockMvc
+            .perform(post("/api/products")
+                         .contentType("application/json")
+                         .content("{\"name\": \"Colour\", \"description\": \"Full colour\", \"price\": 9000, \"duration\": 90}"))
+            .andExpect(status().isCreated());
+
+        String etag = mockMvc
+            .perform(get("/api/products"))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("Colour")))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+        mockMvc.perform(get("/api/products").header("If-None-Match", etag)).andExpect(status().isNotModified());
+
+        // added elsewhere: straight in the database, with nothing published on this node
+        jdbcTemplate.execute("insert into product (name, description, price, duration) values ('Shave', 'Hot towel', 2000, 30)");
+        jdbcTemplate.execute("update resource_version set version = version + 1 where name = 'products'");
+
+        mockMvc
+            .perform(get("/api/products").header("If-None-Match", etag))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("Shave")));
+    }
+
+    @Test
+    public void shouldNotOfferTimesEndingAfterClosing() throws Exception {
+        mockMvc
+            .perform(get("/api/staff/" + employee.getId() + "/times?product=" + product.getId()))
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("\"16:00\"")))
+            .andExpect(content().string(not(containsString("\"16:30\""))));
+
+        mockMvc
+            .perform(post("/api/bookings/batch")
+                         .contentType("application/json")
+                         .content("{\"bookings\": [" + bookingBody("10:00") + ", " + bookingBody("16:30") + "]}"))
+            .andExpect(status().isBadRequest());
+
+        book("16:00");
+    }
+
+    @Test
+    public void shouldClaimFixedBlocksWhateverTheSlotLength() throws Exception {
+        book("11:00");
+
+        // 11:00 - 12:00 as twelve 5 minute blocks, not two 30 minute slots
+        List<Integer> minutes =
+            jdbcTemplate.queryForList("select start_minute from booking_slot order by start_minute", Integer.class);
+        assertEquals(12, minutes.size());
+        assertEquals(660, minutes.get(0));
+        assertEquals(715, minutes.get(11));
+    }
+
+    @Test
+    public void shouldExportTheSameBookingsAsTheList() throws Exception {
+        Long bookingId = book("11:00");
+
+        for (String to : new String[] { tomorrow.toString(), LocalDate.now().toString() }) {
+            String list = mockMvc
+                .perform(get("/api/bookings").param("status", "pending").param("to", to))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+            MvcResult export = mockMvc
+                .perform(get("/api/bookings/export").param("status", "pending").param("to", to))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            String exported = mockMvc
+                .perform(asyncDispatch(export))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+            boolean listed = list.contains("\"" + bookingId + "\"");
+            assertEquals(to.equals(tomorrow.toString()), listed);
+            assertEquals(listed, exported.contains("\"" + bookingId + "\""));
+        }
+    }
+
+    // as appointment times were written when bookings kept the time as a string
+    private String appointmentTime(LocalDate date, String time) {
+        return ZonedDateTime
+            .of(date, LocalTime.parse(time), ZoneId.of("Australia/Melbourne"))
+            .toOffsetDateTime()
+            .toString();
+    }
+
+    @Test
+    public void shouldServeAppointmentTimesAsBooked() throws Exception {
+        String[] times = { "10:00", "13:30", "16:00" };
+        List<String> expected = new ArrayList<>();
+        for (String time : times) {
+            Long bookingId = book(time);
+            expected.add(appointmentTime(tomorrow, time));
+
+            int startMinute = LocalTime.parse(time).toSecondOfDay() / 60;
+            Map<String, Object> row = jdbcTemplate.queryForMap(
+                "select date, start_minute, end_minute from booking where booking_id = ?", bookingId);
+            assertEquals(tomorrow.toString(), row.get("date").toString());
+            assertEquals(startMinute, row.get("start_minute"));
+            assertEquals(startMinute + product.getDuration(), row.get("end_minute"));
+
+            mockMvc
+                .perform(get("/api/bookings/" + bookingId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.booking.appointment_time").value(appointmentTime(tomorrow, time)));
+        }
+
+        mockMvc
+            .perform(get("/api/bookings").param("status", "pending"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.bookings[*].appointment_time", containsInAnyOrder(expected.toArray())));
+
+        MvcResult export = mockMvc
+            .perform(get("/api/bookings/export").param("status", "pending"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        mockMvc
+            .perform(asyncDispatch(export))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.bookings[*].appointment_time", containsInAnyOrder(expected.toArray())));
+    }
+
+    private List<Long> bookBatch(LocalDate date, List<String> times) throws Exception {
+        List<String> bookings = new ArrayList<>();
+        for (String time : times) {
+            bookings.add(bookingBody(time).replace(tomorrow.toString(), date.toString()));
+        }
+
+        String response = mockMvc
+            .perform(post("/api/bookings/batch")
+                         .contentType("application/json")
+                         .content("{\"bookings\": [" + String.join(", ", bookings) + "]}"))
+            .andExpect(status().isCreated())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+        List<Long> ids = new ArrayList<>();
+        for (String id : response.replaceAll("[^0-9,]", "").split(",")) {
+            ids.add(Long.parseLong(id));
+        }
+        return ids;
+    }
+
+    // ids come from the sequence in blocks of 50 per node, so more bookings than that
+    // are made, with another node taking a block of its own in between
+    @Test
+    public void shouldKeepBookingIdsUniqueAcrossBatches() throws Exception {
+        List<String> times = new ArrayList<>();
+        for (LocalTime time = LocalTime.of(10, 0); time.isBefore(LocalTime.of(16, 30)); time = time.plusMinutes(60)) {
+            times.add(time.toString());
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (int day = 1; day <= 10; day++) {
+            LocalDate date = LocalDate.now().plusDays(day);
+            if (day > 1) {
+                addUnannouncedSchedule(date);
+            }
+            ids.addAll(bookBatch(date, times));
+
+            // another node's booking, from the top of the block it was handed
+            if (day == 3) {
+                Long block = jdbcTemplate.queryForObject("select next value for booking_seq", Long.class);
+                jdbcTemplate.update(
+                    "insert into booking (booking_id, status, customer_user_id, employee_employee_id, product_product_id, schedule_id, date, start_minute, end_minute) " +
+                    "select ?, 'PENDING', b.customer_user_id, b.employee_employee_id, b.product_product_id, b.schedule_id, b.date, b.start_minute, b.end_minute " +
+                    "from booking b where b.booking_id = ?",
+                    block,
+                    ids.iterator().next()
+                );
+                assertFalse(ids.contains(block));
+            }
+        }
+
+        assertEquals(10 * times.size(), ids.size());
+        assertEquals(10 * times.size() + 1,
+                     (int) jdbcTemplate.queryForObject("select count(distinct booking_id) from booking", Integer.class));
+    }
+}
@@ -0,0 +1,207 @@
+package com.rmit.sept.mon15307.backend;
+
+import com.rmit.sept.mon15307.backend.Repositories.ProductRepository;
+import com.rmit.sept.mon15307.backend.Repositories.UserRepository;
+import com.rmit.sept.mon15307.backend.model.Product;
+import com.rmit.sept.mon15307.backend.model.UserAccount;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Statements run per booking list request, counted with Hibernate's statistics. Every
+// booking has its own customer, employee, schedule and product, so any association
+// loaded per row shows up as extra statements as the number of bookings grows.
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:querycounts;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.show-sql=false",
+    "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@DirtiesContext
+public class BookingQueryCountTests {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private LocalDate tomorrow;
+
+    private int users;
+
+    @BeforeEach
+    public void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        tomorrow = LocalDate.now().plusDays(1);
+
+        UserAccount admin = newUser();
+        admin.setAdmin(true);
+        admin = userRepository.save(admin);
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(admin, null));
+    }
+
+    @AfterEach
+    public void teardown() {
+        SecurityContextHolder.clearContext();
+        jdbcTemplate.execute("delete from booking_slot");
+        jdbcTemplate.execute("delete from booking");
+        jdbcTemplate.execute("delete from schedule");
+        jdbcTemplate.execute("delete from employee");
+        jdbcTemplate.execute("delete from product");
+        jdbcTemplate.execute("delete from user_account");
+    }
+
+    private UserAccount newUser() {
+        users++;
+        UserAccount user = new UserAccount();
+        user.setFullName("Test User " + users);
+        user.setPreferredName("Test " + users);
+        user.setUsername("user" + users + "@example.com");
+        user.setPassword("password");
+        user.setPhoneNumber("0400000000");
+        user.setAdmin(false);
+        user.setWorker(false);
+        user.setCustomer(true);
+        return user;
+    }
+
+    // count more bookings, each with entities of its own, made in one batch
+    private void addBookings(int count) throws Exception {
+        List<String> bookings = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            UserAccount customer = userRepository.save(newUser());
+            UserAccount worker = userRepository.save(newUser());
+
+            jdbcTemplate.update("insert into employee (created_at, updated_at, user_id) values (now(), now(), ?)",
+                                worker.getUserId()
+            );
+            Long employeeId = jdbcTemplate.queryForObject(
+                "select employee_id from employee where user_id = ?", Long.class, worker.getUserId());
+            jdbcTemplate.update(
+                "insert into schedule (created_at, updated_at, date, scheduled, employee_id) values (now(), now(), ?, true, ?)",
+                tomorrow,
+                employeeId
+            );
+
+            Product product = new Product();
+            product.setName("Haircut " + users);
+            product.setDescription("Cut and style");
+            product.setPrice(3000);
+            product.setDuration(60);
+            product = productRepository.save(product);
+
+            bookings.add("{\"customer_id\": \"" + customer.getUserId() + "\", \"employee_id\": \"" + employeeId
+                + "\", \"product_id\": \"" + product.getId() + "\", \"appointment_date\": \"" + tomorrow
+                + "\", \"appointment_time\": \"11:00\"}");
+        }
+
+        mockMvc
+            .perform(post("/api/bookings/batch")
+                         .contentType("application/json")
+                         .content("{\"bookings\": [" + String.join(", ", bookings) + "]}"))
+            .andExpect(status().isCreated());
+    }
+
+    private String export() throws Exception {
+        MvcResult export = mockMvc
+            .perform(get("/api/bookings/export").param("status", "pending"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        return mockMvc
+            .perform(asyncDispatch(export))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    }
+
+    private String list(String... params) throws Exception {
+        MockHttpServletRequestBuilder list = get("/api/bookings").param("status", "pending");
+        for (int i = 0; i < params.length; i += 2) {
+            list.param(params[i], params[i + 1]);
+        }
+        return mockMvc.perform(list).andExpect(status().isOk()).andReturn().getResponse().getContentAsString();
+    }
+
+    // flat rows straight from the query, without loading any entities
+    @Test
+    public void shouldListBookingsInConstantStatements() throws Exception {
+        addBookings(2);
+        statistics.clear();
+        list();
+        long fewStatements = statistics.getPrepareStatementCount();
+
+        addBookings(8);
+        statistics.clear();
+        String listed = list();
+
+        assertEquals(10, listed.split("\"staff_member\"").length - 1);
+        assertEquals(fewStatements, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+
+        statistics.clear();
+        String page = list("limit", "10");
+
+        assertEquals(10, page.split("\"staff_member\"").length - 1);
+        assertEquals(fewStatements, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    public void shouldExportWithoutLoadingAssociationsPerRow() throws Exception {
+        addBookings(2);
+        statistics.clear();
+        export();
+        long fewStatements = statistics.getPrepareStatementCount();
+
+        addBookings(8);
+        statistics.clear();
+        String exported = export();
+
+        assertEquals(10, exported.split("\"staff_member\"").length - 1);
+        assertEquals(fewStatements, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityFetchCount());
+        assertEquals(0, statistics.getCollectionFetchCount());
+    }
+}
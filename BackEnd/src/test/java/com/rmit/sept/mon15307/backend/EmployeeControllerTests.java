@@ -1,24 +1,40 @@
 package com.rmit.sept.mon15307.backend;
 
+import com.rmit.sept.mon15307.backend.Repositories.BookingSlotRepository;
 import com.rmit.sept.mon15307.backend.Repositories.BookingsRepository;
 import com.rmit.sept.mon15307.backend.Repositories.EmployeeRepository;
 import com.rmit.sept.mon15307.backend.Repositories.ProductRepository;
+import com.rmit.sept.mon15307.backend.Repositories.ResourceVersionRepository;
 import com.rmit.sept.mon15307.backend.Repositories.ScheduleRepository;
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
+import com.rmit.sept.mon15307.backend.exceptions.CustomResponseEntityExceptionHandler;
+import com.rmit.sept.mon15307.backend.events.AvailabilityChangedEvent;
+import com.rmit.sept.mon15307.backend.model.Employee;
+import com.rmit.sept.mon15307.backend.model.Product;
 import com.rmit.sept.mon15307.backend.security.JwtAuthenticationEntryPoint;
 import com.rmit.sept.mon15307.backend.services.*;
 import com.rmit.sept.mon15307.backend.web.EmployeeController;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Import;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest
@@ -30,26 +46,41 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
             EmployeeController.class,
             EmployeeService.class,
             BookingService.class,
+            BusinessHours.class,
             ScheduleService.class,
             ProductService.class,
-            MapValidationErrorService.class
+            AvailabilityService.class,
+            AvailabilityCache.class,
+            ResourceVersions.class,
+            AvailabilityBroadcaster.class,
+            MapValidationErrorService.class,
+            CustomResponseEntityExceptionHandler.class
         })
 public class EmployeeControllerTests {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @MockBean
     private EmployeeRepository employeeRepository;
 
     @MockBean
     private BookingsRepository bookingsRepository;
 
+    @MockBean
+    private BookingSlotRepository bookingSlotRepository;
+
     @MockBean
     private ScheduleRepository scheduleRepository;
 
     @MockBean
     private ProductRepository productRepository;
 
+    @MockBean
+    private ResourceVersionRepository resourceVersionRepository;
+
     @Test
     public void contextsLoads() {
     }
@@ -86,4 +117,115 @@ public class EmployeeControllerTests {
     public void shouldListTimesForEmployee() throws Exception {
         // TODO: pending functionality to create employees and schedules
     }
+
+    @Test
+    public void shouldPushTakenSlotsToStream() throws Exception {
+        Employee employee = Mockito.mock(Employee.class);
+        when(employee.getId()).thenReturn("1");
+        when(employeeRepository.findByEmployeeId(1L)).thenReturn(employee);
+
+        MvcResult stream = mockMvc
+            .perform(get("/api/staff/1/times/stream"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        LocalDate date = LocalDate.now().plusDays(1);
+        eventPublisher.publishEvent(new AvailabilityChangedEvent("1", 1L, date, 0b11L, true, 1L));
+
+        String expected = "event:taken\ndata:{\"staff_id\":\"1\",\"date\":\"" + date +
+                          "\",\"times\":[\"10:00\",\"10:30\"]}";
+        for (int i = 0; i < 50 && !stream.getResponse().getContentAsString().contains(expected); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(stream.getResponse().getContentAsString().contains(expected));
+    }
+
+    @Test
+    public void shouldRejectStreamForUnrecognisedId() throws Exception {
+        mockMvc.perform(get("/api/staff/1/times/stream")).andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void shouldStreamAvailabilityGrid() throws Exception {
+        LocalDate from = LocalDate.now().plusDays(1);
+        MvcResult grid = mockMvc
+            .perform(get("/api/staff/availability")
+                         .param("from", from.toString())
+                         .param("to", from.plusDays(1).toString()))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+
+        String expected = "{\"days\":[" +
+                          "{\"date\":\"" + from + "\",\"times\":[\"10:00\",\"10:30\",\"11:00\"," +
+                          "\"11:30\",\"12:00\",\"12:30\",\"13:00\",\"13:30\",\"14:00\"," +
+                          "\"14:30\",\"15:00\",\"15:30\",\"16:00\",\"16:30\"]}," +
+                          "{\"date\":\"" + from.plusDays(1) + "\",\"times\":[\"10:00\",\"10:30\",\"11:00\"," +
+                          "\"11:30\",\"12:00\",\"12:30\",\"13:00\",\"13:30\",\"14:00\"," +
+                          "\"14:30\",\"15:00\",\"15:30\",\"16:00\",\"16:30\"]}]," +
+                          "\"staff\":[]}";
+        mockMvc
+            .perform(asyncDispatch(grid))
+            .andExpect(status().isOk())
+            .andExpect(content().json(expected));
+    }
+
+    @Test
+    public void shouldRejectLongAvailabilityGrid() throws Exception {
+        mockMvc
+            .perform(get("/api/staff/availability")
+                         .param("from", "2020-10-01")
+                         .param("to", "2020-12-01"))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldAcceptAvailabilityGridOverReadModelWindow() throws Exception {
+        LocalDate today = LocalDate.now();
+        mockMvc
+            .perform(get("/api/staff/availability")
+                         .param("from", today.minusDays(1).toString())
+                         .param("to", today.plusDays(13).toString()))
+            .andExpect(request().asyncStarted());
+    }
+
+    @Test
+    public void shouldRejectAvailabilityGridOutsideReadModelWindow() throws Exception {
+        LocalDate today = LocalDate.now();
+        mockMvc
+            .perform(get("/api/staff/availability")
+                         .param("from", today.minusDays(2).toString())
+                         .param("to", today.toString()))
+            .andExpect(status().isBadRequest());
+        mockMvc
+            .perform(get("/api/staff/availability")
+                         .param("from", today.toString())
+                         .param("to", today.plusDays(14).toString()))
+            .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void shouldSearchWithNoEmployeesOfferingProduct() throws Exception {
+        Product product = new Product();
+        product.setDuration(60);
+        when(productRepository.findByProductId(1L)).thenReturn(product);
+
+        String expected = "{\n  \"staff\": []\n}";
+        mockMvc
+            .perform(get("/api/staff/search")
+                         .param("product", "1")
+                         .param("from", "2020-10-01T10:00:00")
+                         .param("to", "2020-10-02T16:00:00"))
+            .andExpect(status().isOk())
+            .andExpect(content().json(expected));
+    }
+
+    @Test
+    public void shouldRejectUnrecognisedSearchProduct() throws Exception {
+        mockMvc
+            .perform(get("/api/staff/search")
+                         .param("product", "1")
+                         .param("from", "2020-10-01T10:00:00")
+                         .param("to", "2020-10-02T16:00:00"))
+            .andExpect(status().isNotFound());
+    }
 }
@@ -0,0 +1,61 @@
+package com.rmit.sept.mon15307.backend;
+
+import com.rmit.sept.mon15307.backend.security.JwtTokenProvider;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.impl.TextCodec;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static com.rmit.sept.mon15307.backend.security.SecurityConstant.SECRET;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class JwtTokenProviderTests {
+    private final JwtTokenProvider tokenProvider = new JwtTokenProvider(100, 300);
+
+    private static String tokenExpiringAt(Date expiry) {
+        return Jwts.builder()
+            .claim("id", "1")
+            .setIssuedAt(new Date())
+            .setExpiration(expiry)
+            .signWith(SignatureAlgorithm.HS512, TextCodec.BASE64.decode(SECRET))
+            .compact();
+    }
+
+    @Test
+    public void shouldReuseClaimsOfVerifiedToken() {
+        String token = tokenExpiringAt(new Date(System.currentTimeMillis() + 60 * 1000));
+
+        Claims claims = tokenProvider.verify(token);
+        assertNotNull(claims);
+
+        // parsing again would build new claims
+        assertSame(claims, tokenProvider.verify(token));
+    }
+
+    @Test
+    public void shouldRejectCachedTokenOnceExpired() throws Exception {
+        // exp is in whole seconds
+        Date expiry = new Date((System.currentTimeMillis() / 1000 + 2) * 1000);
+        String token = tokenExpiringAt(expiry);
+        assertNotNull(tokenProvider.verify(token));
+
+        Thread.sleep(expiry.getTime() - System.currentTimeMillis() + 100);
+
+        // still cached, as the cache's TTL is far longer than the token's
+        assertNull(tokenProvider.verify(token));
+    }
+
+    @Test
+    public void shouldRejectTamperedToken() {
+        String token = tokenExpiringAt(new Date(System.currentTimeMillis() + 60 * 1000));
+        assertNotNull(tokenProvider.verify(token));
+
+        String tampered = token.substring(0, token.length() - 4) + "AAAA";
+        assertNull(tokenProvider.verify(tampered));
+    }
+}
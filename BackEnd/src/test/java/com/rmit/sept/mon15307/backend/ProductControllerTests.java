@@ -1,11 +1,18 @@
 package com.rmit.sept.mon15307.backend;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.rmit.sept.mon15307.backend.Repositories.ProductRepository;
+import com.rmit.sept.mon15307.backend.Repositories.ResourceVersionRepository;
+import com.rmit.sept.mon15307.backend.business.BusinessHours;
 import com.rmit.sept.mon15307.backend.model.Product;
 import com.rmit.sept.mon15307.backend.security.JwtAuthenticationEntryPoint;
 import com.rmit.sept.mon15307.backend.services.MapValidationErrorService;
 import com.rmit.sept.mon15307.backend.services.ProductService;
+import com.rmit.sept.mon15307.backend.services.ResourceVersions;
 import com.rmit.sept.mon15307.backend.web.ProductController;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -14,15 +21,19 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.util.Collections;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest
@@ -30,7 +41,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @ContextConfiguration(classes = {
     JwtAuthenticationEntryPoint.class
 })
-@Import({ProductController.class, ProductService.class, MapValidationErrorService.class})
+@Import({ProductController.class, ProductService.class, MapValidationErrorService.class,
+    ResourceVersions.class, BusinessHours.class})
 public class ProductControllerTests {
     @Autowired
     private MockMvc mockMvc;
@@ -38,6 +50,23 @@ public class ProductControllerTests {
     @MockBean
     private ProductRepository productRepository;
 
+    @MockBean
+    private ResourceVersionRepository resourceVersionRepository;
+
+    // stands in for the products version row
+    private final AtomicLong productsVersion = new AtomicLong();
+
+    @BeforeEach
+    public void setup() {
+        Mockito
+            .when(resourceVersionRepository.findVersion("products"))
+            .thenAnswer(invocation -> productsVersion.get());
+        Mockito.when(resourceVersionRepository.incrementVersion("products")).thenAnswer(invocation -> {
+            productsVersion.incrementAndGet();
+            return 1;
+        });
+    }
+
     @Test
     public void contextsLoads() {
     }
@@ -52,6 +81,23 @@ public class ProductControllerTests {
             .andExpect(content().json(expected));
     }
 
+    @Test
+    @WithMockUser
+    public void shouldListProductsAsSmile() throws Exception {
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+        MockHttpServletResponse response = mockMvc
+            .perform(get("/api/products").accept(smile))
+            .andExpect(status().isOk())
+            .andExpect(content().contentType(smile))
+            .andReturn()
+            .getResponse();
+
+        assertTrue(response.getHeaders("Vary").contains("Accept"));
+        JsonNode products =
+            new ObjectMapper(new SmileFactory()).readTree(response.getContentAsByteArray());
+        assertTrue(products.get("products").isArray());
+    }
+
     @Test
     @WithMockUser
     public void shouldCreateValidProduct() throws Exception {
@@ -68,6 +114,38 @@ public class ProductControllerTests {
         Mockito.verify(productRepository, Mockito.times(1)).save(Mockito.any(Product.class));
     }
 
+    @Test
+    @WithMockUser
+    public void shouldAnswerNotModifiedUntilProductsChange() throws Exception {
+        String etag = mockMvc
+            .perform(get("/api/products"))
+            .andExpect(status().isOk())
+            .andExpect(header().exists("ETag"))
+            .andReturn()
+            .getResponse()
+            .getHeader("ETag");
+
+        mockMvc
+            .perform(get("/api/products").header("If-None-Match", etag))
+            .andExpect(status().isNotModified())
+            .andExpect(content().string(""));
+        Mockito.verify(productRepository, Mockito.times(1)).findAll();
+
+        String body = "{\n" +
+                      "  \"name\": \"test product\",\n" +
+                      "  \"description\": \"test product description\",\n" +
+                      "  \"price\": 50,\n" +
+                      "  \"duration\": 30\n" +
+                      "}";
+        mockMvc
+            .perform(post("/api/products").contentType("application/json").content(body))
+            .andExpect(status().isCreated());
+
+        mockMvc
+            .perform(get("/api/products").header("If-None-Match", etag))
+            .andExpect(status().isOk());
+    }
+
     @Test
     @WithMockUser
     public void shouldRejectInvalidProduct() throws Exception {
@@ -0,0 +1,243 @@
+package com.rmit.sept.mon15307.backend;
+
+import com.rmit.sept.mon15307.backend.Repositories.EmployeeRepository;
+import com.rmit.sept.mon15307.backend.Repositories.ProductRepository;
+import com.rmit.sept.mon15307.backend.Repositories.UserRepository;
+import com.rmit.sept.mon15307.backend.model.Booking;
+import com.rmit.sept.mon15307.backend.model.Employee;
+import com.rmit.sept.mon15307.backend.model.Product;
+import com.rmit.sept.mon15307.backend.model.UserAccount;
+import com.rmit.sept.mon15307.backend.model.enumeration.BookingStatus;
+import com.rmit.sept.mon15307.backend.payload.BookingFilter;
+import com.rmit.sept.mon15307.backend.services.BookingExportService;
+import com.rmit.sept.mon15307.backend.services.BookingService;
+import com.rmit.sept.mon15307.backend.services.EmployeeService;
+import com.rmit.sept.mon15307.backend.services.ProductService;
+import com.rmit.sept.mon15307.backend.services.ScheduleService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Which of two databases each kind of read and write goes to with a replica set up.
+// The replica starts as a copy of the primary and is then made to differ from it:
+// its product and staff names are changed and it has no bookings or schedules.
+@SpringBootTest
+@AutoConfigureMockMvc(addFilters = false)
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:routingprimary;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "booking.datasource.replica.url=" + ReplicaRoutingIntegrationTests.REPLICA_URL,
+    "spring.jpa.show-sql=false"
+})
+@DirtiesContext
+public class ReplicaRoutingIntegrationTests {
+    static final String REPLICA_URL = "jdbc:h2:mem:routingreplica;DB_CLOSE_DELAY=-1";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EmployeeRepository employeeRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BookingExportService bookingExportService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private EmployeeService employeeService;
+
+    @Autowired
+    private ScheduleService scheduleService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    // outside of a transaction, so always the primary
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final JdbcTemplate replica =
+        new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    private Employee employee;
+
+    private LocalDate tomorrow;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        UserAccount customer = userRepository.save(newUser("customer@example.com"));
+        UserAccount worker = userRepository.save(newUser("worker@example.com"));
+
+        jdbcTemplate.update("insert into employee (created_at, updated_at, user_id) values (now(), now(), ?)",
+                            worker.getUserId()
+        );
+        employee = employeeRepository.findAll().iterator().next();
+
+        tomorrow = LocalDate.now().plusDays(1);
+        jdbcTemplate.update(
+            "insert into schedule (created_at, updated_at, date, scheduled, employee_id) values (now(), now(), ?, true, ?)",
+            tomorrow,
+            Long.parseLong(employee.getId())
+        );
+
+        Product product = new Product();
+        product.setName("Haircut");
+        product.setDescription("Cut and style");
+        product.setPrice(3000);
+        product.setDuration(60);
+        product = productRepository.save(product);
+
+        SecurityContextHolder
+            .getContext()
+            .setAuthentication(new UsernamePasswordAuthenticationToken(customer, null));
+        mockMvc
+            .perform(post("/api/bookings")
+                         .contentType("application/json")
+                         .content("{\"customer_id\": \"" + customer.getUserId() +
+                                  "\", \"employee_id\": \"" + employee.getId() +
+                                  "\", \"product_id\": \"" + product.getId() +
+                                  "\", \"appointment_date\": \"" + tomorrow +
+                                  "\", \"appointment_time\": \"11:00\"}"))
+            .andExpect(status().isCreated());
+
+        for (String statement : jdbcTemplate.queryForList("script", String.class)) {
+            replica.execute(statement);
+        }
+        replica.execute("update product set name = 'Replica ' || name");
+        replica.execute("update user_account set preferred_name = 'Replica'");
+        replica.execute("delete from booking_slot");
+        replica.execute("delete from booking");
+        replica.execute("delete from schedule");
+    }
+
+    @AfterEach
+    public void teardown() {
+        SecurityContextHolder.clearContext();
+        replica.execute("drop all objects");
+        jdbcTemplate.execute("delete from booking_slot");
+        jdbcTemplate.execute("delete from booking");
+        jdbcTemplate.execute("delete from schedule");
+        jdbcTemplate.execute("delete from employee");
+        jdbcTemplate.execute("delete from product");
+        jdbcTemplate.execute("delete from user_account");
+    }
+
+    private static UserAccount newUser(String username) {
+        UserAccount user = new UserAccount();
+        user.setFullName("Test User");
+        user.setPreferredName("Test");
+        user.setUsername(username);
+        user.setPassword("password");
+        user.setPhoneNumber("0400000000");
+        user.setAdmin(false);
+        user.setWorker(false);
+        user.setCustomer(true);
+        return user;
+    }
+
+    private static BookingFilter allBookings() {
+        return new BookingFilter(EnumSet.allOf(BookingStatus.class));
+    }
+
+    @Test
+    public void shouldReadListsFromReplica() throws Exception {
+        for (Product product : productService.findAllProducts()) {
+            assertEquals("Replica Haircut", product.getName());
+        }
+
+        for (Employee listed : employeeService.findAllEmployees()) {
+            assertEquals("Replica", listed.getName());
+        }
+        assertEquals("Replica", employeeService.findAllEmployeesWithUsers().get(0).getName());
+
+        assertTrue(bookingService.findBookings(allBookings()).isEmpty());
+        assertTrue(bookingService.findBookings(allBookings(), 0, 10).isEmpty());
+
+        List<Booking> exported = new ArrayList<>();
+        bookingExportService.exportBookings(allBookings(), exported::add);
+        assertTrue(exported.isEmpty());
+    }
+
+    // the availability read model must see bookings as soon as they commit
+    @Test
+    public void shouldReadSchedulesFromPrimary() {
+        assertNotNull(scheduleService.findByEmployeeAndDate(employee, tomorrow));
+        assertTrue(scheduleService
+                       .findByEmployeeAndDateRange(employee, tomorrow, tomorrow)
+                       .iterator()
+                       .hasNext());
+        assertEquals(1L, (long) employeeService.findAvailabilityVersion(Long.parseLong(employee.getId())));
+    }
+
+    // repository methods run in read only transactions of their own, which must not
+    // count as service reads
+    @Test
+    public void shouldReadFromPrimaryOutsideServiceReads() {
+        for (Product product : productRepository.findAll()) {
+            assertEquals("Haircut", product.getName());
+        }
+        assertEquals("Test", employeeRepository.findByEmployeeId(Long.parseLong(employee.getId())).getName());
+    }
+
+    @Test
+    public void shouldReadFromPrimaryInWriteTransactions() {
+        List<String> names = transactionTemplate.execute(transaction -> {
+            List<String> read = new ArrayList<>();
+            productRepository.findAll().forEach(product -> read.add(product.getName()));
+            read.add(employeeService.findAllEmployees().iterator().next().getName());
+            read.add(String.valueOf(bookingService.findBookings(allBookings()).size()));
+            return read;
+        });
+
+        assertEquals(List.of("Haircut", "Test", "1"), names);
+    }
+
+    @Test
+    public void shouldWriteToPrimary() {
+        Product product = new Product();
+        product.setName("Shave");
+        product.setDescription("Hot towel");
+        product.setPrice(2000);
+        product.setDuration(30);
+        productService.saveOrUpdateProduct(product);
+
+        assertEquals(1, (int) jdbcTemplate.queryForObject(
+            "select count(*) from product where name = 'Shave'", Integer.class));
+        assertEquals(0, (int) replica.queryForObject(
+            "select count(*) from product where name = 'Shave'", Integer.class));
+    }
+}
@@ -0,0 +1,201 @@
+package com.rmit.sept.mon15307.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.rmit.sept.mon15307.backend.Repositories.UserRepository;
+import com.rmit.sept.mon15307.backend.model.UserAccount;
+import com.rmit.sept.mon15307.backend.payload.UserProfilePatch;
+import com.rmit.sept.mon15307.backend.security.JwtTokenProvider;
+import com.rmit.sept.mon15307.backend.services.CustomUserDetailsService;
+import com.rmit.sept.mon15307.backend.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// User accounts and the tokens issued for them against a real (in-memory) database,
+// with principals built from token claims
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:users;DB_CLOSE_DELAY=-1",
+    "spring.datasource.username=sa",
+    "spring.datasource.password=",
+    "spring.jpa.show-sql=false",
+    "booking.claims-principal.enabled=true"
+})
+@DirtiesContext
+public class UserAccountIntegrationTests {
+    private static final String PASSWORD = "password";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CustomUserDetailsService customUserDetailsService;
+
+    @Autowired
+    private BCryptPasswordEncoder bCryptPasswordEncoder;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private UserAccount customer;
+
+    @BeforeEach
+    public void setup() {
+        customer = userRepository.save(newUser("customer@example.com"));
+    }
+
+    @AfterEach
+    public void teardown() {
+        jdbcTemplate.execute("delete from user_account");
+    }
+
+    private UserAccount newUser(String username) {
+        UserAccount user = new UserAccount();
+        user.setFullName("Test User");
+        user.setPreferredName("Test");
+        user.setUsername(username);
+        user.setPassword(bCryptPasswordEncoder.encode(PASSWORD));
+        user.setPhoneNumber("0400000000");
+        user.setAdmin(false);
+        user.setWorker(false);
+        user.setCustomer(true);
+        return user;
+    }
+
+    private String login(UserAccount user) throws Exception {
+        String response = mockMvc
+            .perform(post("/api/user/login")
+                         .contentType("application/json")
+                         .content("{\"username\": \"" + user.getUsername() + "\", \"password\": \"" + PASSWORD + "\"}"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        return objectMapper.readTree(response).get("token").asText();
+    }
+
+    private ResultActions getUser(UserAccount user, String token) throws Exception {
+        return mockMvc.perform(get("/api/user/" + user.getUserId()).header("Authorization", token));
+    }
+
+    @Test
+    public void shouldDropCachedPrincipalWhenProfileIsEdited() throws Exception {
+        UserAccount principal = customUserDetailsService.loadUserById(customer.getUserId());
+        assertSame(principal, customUserDetailsService.loadUserById(customer.getUserId()));
+
+        UserProfilePatch patch =
+            objectMapper.readValue("{\"preferredName\": \"Renamed\"}", UserProfilePatch.class);
+        userService.editUser(principal, patch);
+
+        assertEquals("Renamed", customUserDetailsService.loadUserById(customer.getUserId()).getPreferredName());
+    }
+
+    @Test
+    public void shouldRejectRevokedToken() throws Exception {
+        String token = login(customer);
+        getUser(customer, token).andExpect(status().isOk());
+
+        mockMvc
+            .perform(post("/api/user/" + customer.getUserId() + "/revoke").header("Authorization", token))
+            .andExpect(status().isNoContent());
+
+        getUser(customer, token).andExpect(status().isUnauthorized());
+        getUser(customer, login(customer)).andExpect(status().isOk());
+    }
+
+    @Test
+    public void shouldRejectTokenWithOutdatedVersion() throws Exception {
+        UserAccount stale = userRepository.findByUserId(customer.getUserId());
+
+        // revoked elsewhere, with no event on this node
+        jdbcTemplate.update("update user_account set token_version = token_version + 1 where user_id = ?",
+                            customer.getUserId()
+        );
+
+        String staleToken = "Bearer " + tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(stale, null));
+        getUser(customer, staleToken).andExpect(status().isUnauthorized());
+
+        UserAccount current = userRepository.findByUserId(customer.getUserId());
+        String token = "Bearer " + tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(current, null));
+        getUser(customer, token).andExpect(status().isOk());
+    }
+
+    @Test
+    public void shouldRejectTokenWithOldRole() throws Exception {
+        UserAccount admin = newUser("admin@example.com");
+        admin.setAdmin(true);
+        admin = userRepository.save(admin);
+        UserAccount other = userRepository.save(newUser("other@example.com"));
+
+        // as a customer, only their own details
+        String customerToken = login(customer);
+        getUser(other, customerToken).andExpect(status().isForbidden());
+
+        mockMvc
+            .perform(put("/api/user/" + customer.getUserId() + "/role")
+                         .header("Authorization", login(admin))
+                         .contentType("application/json")
+                         .content("{\"role\": \"worker\"}"))
+            .andExpect(status().isOk());
+
+        // issued before the change, so it still claims a customer
+        getUser(customer, customerToken).andExpect(status().isUnauthorized());
+
+        // as a worker, anyone's
+        getUser(other, login(customer)).andExpect(status().isOk());
+    }
+
+    @Test
+    public void shouldReplaceTokensWhenProfileIsEdited() throws Exception {
+        String token = login(customer);
+
+        String response = mockMvc
+            .perform(patch("/api/user/profile")
+                         .header("Authorization", token)
+                         .contentType("application/json")
+                         .content("{\"preferredName\": \"Renamed\"}"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+        String newToken = objectMapper.readTree(response).get("token").asText();
+
+        getUser(customer, token).andExpect(status().isUnauthorized());
+        getUser(customer, newToken)
+            .andExpect(status().isOk())
+            .andExpect(content().string(containsString("Renamed")));
+    }
+}
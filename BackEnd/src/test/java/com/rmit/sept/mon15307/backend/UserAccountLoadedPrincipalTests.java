@@ -0,0 +1,11 @@
+package com.rmit.sept.mon15307.backend;
+
+import org.springframework.test.context.TestPropertySource;
+
+// The same tests with principals loaded from the user table, the default
+@TestPropertySource(properties = {
+    "spring.datasource.url=jdbc:h2:mem:loadedusers;DB_CLOSE_DELAY=-1",
+    "booking.claims-principal.enabled=false"
+})
+public class UserAccountLoadedPrincipalTests extends UserAccountIntegrationTests {
+}